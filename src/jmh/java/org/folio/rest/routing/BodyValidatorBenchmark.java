@@ -0,0 +1,98 @@
+package org.folio.rest.routing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import org.folio.rest.jaxrs.model.Pet;
+import org.folio.rest.tools.utils.ObjectMapperTool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.ValidatorFactory;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and validating a Pet request body - a validator per request and the read-only metadata removed
+ * by a JsonObject round trip, as RestVerticle2.isValidRequest() used to, versus {@link BodyValidator} - reading
+ * the body decoded to a String, as RestVerticle2.parseParams() used to, and straight from its bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BodyValidatorBenchmark {
+
+  private static final ObjectMapper MAPPER = ObjectMapperTool.getMapper();
+  private static final ValidatorFactory FACTORY = Validation.buildDefaultValidatorFactory();
+
+  private static final String VALID = "{\"genus\":\"felis\",\"quantity\":3,\"notes\":\"friendly\"}";
+  private static final String INVALID = "{\"quantity\":3,\"notes\":\"friendly\"}";
+  private static final String READ_ONLY = "{\"genus\":\"felis\",\"quantity\":3,\"notes\":\"friendly\","
+    + "\"metadata\":{\"createdDate\":\"2018-01-01T00:00:00.000+0000\",\"createdByUserId\":\"x\"}}";
+
+  @Param({ "valid", "invalid", "readOnly" })
+  public String body;
+
+  private Buffer buffer;
+
+  @Setup
+  public void setUp() {
+    buffer = Buffer.buffer(json());
+  }
+
+  private String json() {
+    switch (body) {
+      case "invalid": return INVALID;
+      case "readOnly": return READ_ONLY;
+      default: return VALID;
+    }
+  }
+
+  @Benchmark
+  public Object validatorPerRequest() throws Exception {
+    Object content = MAPPER.readValue(buffer.toString("UTF-8"), Pet.class);
+    Set<ConstraintViolation<Object>> violations = FACTORY.getValidator().validate(content);
+    for (ConstraintViolation<Object> cv : violations) {
+      if ("must be null".equals(cv.getMessage())) {
+        if (!(content instanceof JsonObject)) {
+          content = JsonObject.mapFrom(content);
+        }
+        ((JsonObject) content).remove(cv.getPropertyPath().toString());
+      }
+    }
+    if (content instanceof JsonObject) {
+      content = MAPPER.readValue(((JsonObject) content).encode(), Pet.class);
+    }
+    return content;
+  }
+
+  @Benchmark
+  public Object bodyValidatorFromString() throws Exception {
+    BodyValidator validator = BodyValidator.forClass(Pet.class);
+    Pet pet = validator.getReader().readValue(buffer.toString("UTF-8"));
+    validator.validate(pet);
+    return pet;
+  }
+
+  @Benchmark
+  public Object bodyValidatorFromBytes() throws Exception {
+    BodyValidator validator = BodyValidator.forClass(Pet.class);
+    Pet pet = validator.read(buffer);
+    validator.validate(pet);
+    return pet;
+  }
+}
@@ -0,0 +1,89 @@
+package org.folio.rest.routing;
+
+import io.vertx.core.buffer.Buffer;
+import org.folio.rest.jaxrs.model.Pet;
+import org.folio.rest.jaxrs.model.PetsCollection;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Cpu cost of deflating a PetsCollection page at the levels http.compression.level can be set to - the
+ * bodyBytes and deflatedBytes counters total the bytes in and out, their ratio is what each level saves on
+ * the wire, to be weighed against the time per page.
+ * gzip is deflate with a header and a checksum, the tradeoff is the same.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+  @Param({"1", "3", "6", "9"})
+  private int level;
+
+  @Param({"10", "100", "1000"})
+  private int pets;
+
+  private byte[] body;
+  private byte[] out;
+  private Deflater deflater;
+
+  @Setup
+  public void setUp() throws Exception {
+    List<Pet> list = new ArrayList<>();
+    for (int i = 0; i < pets; i++) {
+      Pet pet = new Pet();
+      pet.setId(UUID.randomUUID().toString());
+      pet.setGenus("felis " + i);
+      pet.setQuantity(i);
+      pet.setNotes("found near the harbour, friendly, needs a home with a garden");
+      list.add(pet);
+    }
+    PetsCollection collection = new PetsCollection();
+    collection.setPets(list);
+    collection.setTotalRecords(list.size());
+    Buffer json = JsonBodyWriter.write(collection, false);
+    body = json.getBytes();
+    out = new byte[body.length + 64];
+    deflater = new Deflater(level, true);
+  }
+
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class Sizes {
+    public long bodyBytes;
+    public long deflatedBytes;
+  }
+
+  @Benchmark
+  public int deflate(Sizes sizes) {
+    deflater.reset();
+    deflater.setInput(body);
+    deflater.finish();
+    int length = 0;
+    while (!deflater.finished()) {
+      length += deflater.deflate(out, 0, out.length);
+    }
+    sizes.bodyBytes += body.length;
+    sizes.deflatedBytes += length;
+    return length;
+  }
+}
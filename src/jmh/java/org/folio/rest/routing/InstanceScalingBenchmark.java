@@ -0,0 +1,111 @@
+package org.folio.rest.routing;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import org.folio.rest.jaxrs.model.Pet;
+import org.folio.rest.jaxrs.model.PetsCollection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request throughput as the number of server verticle instances, and with them event loops, grows - each
+ * request serializes a 100 pet page the way sendResponse does, the cpu bound part of a response. With enough
+ * cores for the clients too, throughput should grow close to linearly up to the number of cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class InstanceScalingBenchmark {
+
+  private static final int PORT = 9232;
+
+  @Param({"1", "2", "4", "8"})
+  private int instances;
+
+  private Vertx vertx;
+  private Vertx clientVertx;
+  private HttpClient client;
+
+  public static class Server extends AbstractVerticle {
+    private static final PetsCollection PAGE = page();
+
+    private static PetsCollection page() {
+      List<Pet> list = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        Pet pet = new Pet();
+        pet.setId(UUID.randomUUID().toString());
+        pet.setGenus("felis " + i);
+        pet.setQuantity(i);
+        list.add(pet);
+      }
+      PetsCollection collection = new PetsCollection();
+      collection.setPets(list);
+      collection.setTotalRecords(list.size());
+      return collection;
+    }
+
+    @Override
+    public void start() {
+      vertx.createHttpServer().requestHandler(request -> {
+        try {
+          request.response().end(JsonBodyWriter.write(PAGE, false));
+        } catch (Exception e) {
+          request.response().setStatusCode(500).end();
+        }
+      }).listen(PORT);
+    }
+  }
+
+  @Setup
+  public void setUp() throws Exception {
+    vertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(instances));
+    CompletableFuture<Void> deployed = new CompletableFuture<>();
+    vertx.deployVerticle(Server.class.getName(), new DeploymentOptions().setInstances(instances),
+      ar -> deployed.complete(null));
+    deployed.get();
+    // the clients run on event loops of their own
+    clientVertx = Vertx.vertx();
+    client = clientVertx.createHttpClient(new HttpClientOptions().setKeepAlive(true).setMaxPoolSize(32)
+      .setDefaultPort(PORT).setDefaultHost("localhost"));
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    CompletableFuture<Void> closed = new CompletableFuture<>();
+    clientVertx.close(ar -> vertx.close(ar2 -> closed.complete(null)));
+    closed.get();
+  }
+
+  @Benchmark
+  public Buffer get() throws Exception {
+    CompletableFuture<Buffer> response = new CompletableFuture<>();
+    client.getNow("/", resp -> resp.bodyHandler(response::complete));
+    return response.get(5, TimeUnit.SECONDS);
+  }
+}
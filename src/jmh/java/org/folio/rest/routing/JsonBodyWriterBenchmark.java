@@ -0,0 +1,86 @@
+package org.folio.rest.routing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.core.buffer.Buffer;
+import org.folio.rest.jaxrs.model.Pet;
+import org.folio.rest.jaxrs.model.PetsCollection;
+import org.folio.rest.tools.utils.ObjectMapperTool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a response entity into the buffer written to the response - the pretty printed String
+ * RestVerticle2.sendResponse() used to build versus {@link JsonBodyWriter}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBodyWriterBenchmark {
+
+  private static final ObjectMapper MAPPER = ObjectMapperTool.getMapper();
+
+  private Pet pet;
+  private PetsCollection pets;
+
+  @Setup
+  public void setUp() {
+    pet = pet(0);
+    List<Pet> list = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      list.add(pet(i));
+    }
+    pets = new PetsCollection();
+    pets.setPets(list);
+    pets.setTotalRecords(list.size());
+  }
+
+  private static Pet pet(int i) {
+    Pet pet = new Pet();
+    pet.setId(UUID.randomUUID().toString());
+    pet.setGenus("felis " + i);
+    pet.setQuantity(i);
+    pet.setNotes("found near the harbour, friendly, needs a home with a garden");
+    return pet;
+  }
+
+  @Benchmark
+  public Buffer petPrettyString() throws Exception {
+    return Buffer.buffer(MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(pet));
+  }
+
+  @Benchmark
+  public Buffer petCompact() throws Exception {
+    return JsonBodyWriter.write(pet, false);
+  }
+
+  @Benchmark
+  public Buffer collectionPrettyString() throws Exception {
+    return Buffer.buffer(MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(pets));
+  }
+
+  @Benchmark
+  public Buffer collectionCompact() throws Exception {
+    return JsonBodyWriter.write(pets, false);
+  }
+
+  @Benchmark
+  public Buffer collectionPretty() throws Exception {
+    return JsonBodyWriter.write(pets, true);
+  }
+}
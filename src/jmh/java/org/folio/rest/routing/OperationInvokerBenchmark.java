@@ -0,0 +1,94 @@
+package org.folio.rest.routing;
+
+import io.vertx.core.Vertx;
+import org.folio.rest.tools.RTFConsts;
+import org.folio.rest.tools.utils.InterfaceToImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per request cost of getting from a resolved route to the call of the implementing function -
+ * the reflective path RestVerticle2.route() used to take versus the pre-bound {@link OperationInvoker}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperationInvokerBenchmark {
+
+  private static final String INTERFACE = "org.folio.rest.jaxrs.resource.Pets";
+  private static final String FUNCTION = "getPetsById";
+
+  private OperationInvoker invoker;
+  private Object[] args;
+
+  public static class Target {
+    public Target() {
+    }
+
+    public Target(Vertx vertx, String tenantId) {
+    }
+
+    public void getPetsById(String id, String lang, Object okapiHeaders, Object observer, Object vertxContext) {
+    }
+  }
+
+  @Setup
+  public void setUp() throws Exception {
+    invoker = new OperationInvoker(Target.class, FUNCTION);
+    args = new Object[] { "id", "en", null, null, null };
+  }
+
+  @Benchmark
+  public void reflective(Blackhole bh) throws Exception {
+    // convert2Impl() is the classpath lookup of the implementation done for every request
+    bh.consume(InterfaceToImpl.convert2Impl(RTFConsts.PACKAGE_OF_IMPLEMENTATIONS, INTERFACE, false).get(0));
+    Class<?> aClass = Target.class;
+    Object o = aClass.getConstructor(Vertx.class, String.class).newInstance(null, "diku");
+    Method[] methods = aClass.getMethods();
+    Method method2Run = null;
+    for (int i = 0; i < methods.length; i++) {
+      if (methods[i].getName().equals(FUNCTION)) {
+        method2Run = methods[i];
+        break;
+      }
+    }
+    method2Run.invoke(o, args.clone());
+  }
+
+  @Benchmark
+  public void reflectiveWithoutLookup(Blackhole bh) throws Exception {
+    Class<?> aClass = Target.class;
+    Object o = aClass.getConstructor(Vertx.class, String.class).newInstance(null, "diku");
+    Method[] methods = aClass.getMethods();
+    Method method2Run = null;
+    for (int i = 0; i < methods.length; i++) {
+      if (methods[i].getName().equals(FUNCTION)) {
+        method2Run = methods[i];
+        break;
+      }
+    }
+    bh.consume(method2Run.invoke(o, args.clone()));
+  }
+
+  @Benchmark
+  public void cachedInvoker(Blackhole bh) throws Throwable {
+    Object o = invoker.newInstance(null, "diku");
+    invoker.invoke(o, args.clone());
+    bh.consume(o);
+  }
+}
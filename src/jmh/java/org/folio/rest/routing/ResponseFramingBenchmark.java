@@ -0,0 +1,102 @@
+package org.folio.rest.routing;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpServer;
+import org.folio.rest.jaxrs.model.Pet;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small response round trips over a keep-alive connection - the body written to a chunked response and
+ * ended, as RestVerticle2.sendResponse() used to, versus the response ended with the body, which sends it
+ * with a Content-Length. The wireBytes counter over the responses counter is the bytes of body and framing
+ * headers each framing puts on the wire per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class ResponseFramingBenchmark {
+
+  private static final int PORT = 9231;
+
+  @Param({"chunked", "fixed"})
+  private String framing;
+
+  private Vertx vertx;
+  private HttpClient client;
+  private String path;
+  private long bytes;
+
+  @Setup
+  public void setUp() throws Exception {
+    Pet pet = new Pet();
+    pet.setId(UUID.randomUUID().toString());
+    pet.setGenus("felis");
+    pet.setQuantity(3);
+    Buffer body = JsonBodyWriter.write(pet, false);
+    vertx = Vertx.vertx();
+    HttpServer server = vertx.createHttpServer().requestHandler(request -> {
+      if (request.path().equals("/chunked")) {
+        request.response().setChunked(true).write(body).end();
+      } else {
+        request.response().end(body);
+      }
+    });
+    CompletableFuture<Void> listening = new CompletableFuture<>();
+    server.listen(PORT, ar -> listening.complete(null));
+    listening.get();
+    client = vertx.createHttpClient(new HttpClientOptions().setKeepAlive(true).setMaxPoolSize(8)
+      .setDefaultPort(PORT).setDefaultHost("localhost"));
+    path = "/" + framing;
+    bytes = body.length() + ("chunked".equals(framing)
+      ? Integer.toHexString(body.length()).length() + "\r\n\r\n0\r\n\r\n".length() + "Transfer-Encoding: chunked\r\n".length()
+      : ("Content-Length: " + body.length() + "\r\n").length());
+  }
+
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class Wire {
+    public long responses;
+    public long wireBytes;
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    CompletableFuture<Void> closed = new CompletableFuture<>();
+    vertx.close(ar -> closed.complete(null));
+    closed.get();
+  }
+
+  @Benchmark
+  public Buffer get(Wire wire) throws Exception {
+    CompletableFuture<Buffer> response = new CompletableFuture<>();
+    client.getNow(path, resp -> resp.bodyHandler(response::complete));
+    Buffer body = response.get(5, TimeUnit.SECONDS);
+    wire.responses++;
+    wire.wireBytes += bytes;
+    return body;
+  }
+}
@@ -1,23 +1,52 @@
 package org.folio.rest.impl;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
 import io.reactivex.Single;
 import io.reactivex.SingleObserver;
 import io.vertx.core.Context;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.UpdateResult;
+import io.vertx.ext.web.RoutingContext;
+import org.apache.commons.lang3.StringUtils;
+import org.folio.rest.jaxrs.model.Adoption;
+import org.folio.rest.jaxrs.model.AdoptionRequest;
+import org.folio.rest.jaxrs.model.AdoptionsCollection;
+import org.folio.rest.jaxrs.model.ImportError;
+import org.folio.rest.jaxrs.model.ImportSummary;
 import org.folio.rest.jaxrs.model.Pet;
 import org.folio.rest.jaxrs.model.PetsCollection;
 import org.folio.rest.jaxrs.resource.Pets;
 import org.folio.rest.persist.Criteria.Criteria;
 import org.folio.rest.persist.Criteria.Criterion;
 import org.folio.rest.persist.interfaces.Results;
+import org.folio.rest.tools.utils.BinaryOutStream;
+import org.folio.rest.tools.utils.ObjectMapperTool;
+import org.folio.rest.utils.BulkImport;
+import org.folio.rest.utils.ETags;
+import org.folio.rest.utils.EntityCache;
+import org.folio.rest.utils.KeysetQuery;
 import org.folio.rest.utils.PgQuery;
-import org.folio.rest.utils.PgTransaction;
 import org.folio.rest.utils.PostgresClient;
+import org.folio.rest.utils.Versioned;
+import org.z3950.zing.cql.CQLParseException;
+import org.z3950.zing.cql.cql2pgjson.QueryValidationException;
 
 import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 public class PetsImpl implements Pets {
@@ -25,11 +54,62 @@ public class PetsImpl implements Pets {
   private static final String HOMELESS_PETS_TABLE_NAME = "homeless_pets";
   private static final String ADOPTED_PETS_TABLE_NAME = "adopted_pets";
   private static final String[] ALL_FIELDS = {"*"};
+  private static final String[] ADOPTED_FIELDS = {"genus", "quantity"};
+
+  // fields with an index on the order of a cursor page, see schema.json
+  private static final Set<String> KEYSET_SORT_FIELDS = Collections.singleton("genus");
+  private static final String IMPORT_BATCH_SIZE = "import.batch.size";
+  private static final String IMPORT_MAX_RECORD_SIZE = "import.record.max.size";
+  private static final String EXPORT_FETCH_SIZE = "export.fetch.size";
+  private static final int DEFAULT_EXPORT_FETCH_SIZE = 500;
+  private static final String NDJSON = "application/x-ndjson";
+  private static final String JSON = "application/json";
+  private static final String PETS_CACHE_ENABLED = "pets.cache.enabled";
+  private static final String PETS_CACHE_SIZE = "pets.cache.size";
+  private static final String PETS_CACHE_TTL = "pets.cache.ttl";
+  private static final String PETS_CACHE_NAME = "pets";
+  private static final ObjectMapper MAPPER = ObjectMapperTool.getMapper();
+  private static final String COUNT_ESTIMATE_THRESHOLD = "count.estimate.threshold";
+  private static final long DEFAULT_COUNT_ESTIMATE_THRESHOLD = 1000;
+  private static final String COUNT_AUTO = "auto";
+  private static final String COUNT_EXACT = "exact";
+  private static final String COUNT_NONE = "none";
 
   private final PostgresClient pgClient;
+  private final int importBatchSize;
+  private final int importMaxRecordSize;
+  private final int exportFetchSize;
+  private final long countEstimateThreshold;
+  private final String tenantId;
+  // of the pet cache, see petCache()
+  private final boolean petCacheEnabled;
+  private final int petCacheSize;
+  private final long petCacheTtl;
 
   public PetsImpl(Vertx vertx, String tenantId) {
     this.pgClient = PostgresClient.getInstance(vertx, tenantId);
+    JsonObject config = vertx.getOrCreateContext().config();
+    this.importBatchSize = config == null ? BulkImport.DEFAULT_BATCH_SIZE
+      : config.getInteger(IMPORT_BATCH_SIZE, BulkImport.DEFAULT_BATCH_SIZE);
+    this.importMaxRecordSize = config == null ? BulkImport.DEFAULT_MAX_RECORD_SIZE
+      : config.getInteger(IMPORT_MAX_RECORD_SIZE, BulkImport.DEFAULT_MAX_RECORD_SIZE);
+    this.exportFetchSize = config == null ? DEFAULT_EXPORT_FETCH_SIZE
+      : config.getInteger(EXPORT_FETCH_SIZE, DEFAULT_EXPORT_FETCH_SIZE);
+    this.countEstimateThreshold = config == null ? DEFAULT_COUNT_ESTIMATE_THRESHOLD
+      : config.getLong(COUNT_ESTIMATE_THRESHOLD, DEFAULT_COUNT_ESTIMATE_THRESHOLD);
+    this.tenantId = tenantId;
+    this.petCacheEnabled = config == null || config.getBoolean(PETS_CACHE_ENABLED, true);
+    this.petCacheSize = config == null ? EntityCache.DEFAULT_MAX_SIZE
+      : config.getInteger(PETS_CACHE_SIZE, EntityCache.DEFAULT_MAX_SIZE);
+    this.petCacheTtl = config == null ? EntityCache.DEFAULT_TTL : config.getLong(PETS_CACHE_TTL, EntityCache.DEFAULT_TTL);
+  }
+
+  /**
+   * @return serialized pets by id, shared with the instances of the tenant on other event loops - looked up on
+   *   each use as it is dropped once the tenant is idle, null if turned off
+   */
+  private EntityCache petCache() {
+    return petCacheEnabled ? EntityCache.forTenant(tenantId, PETS_CACHE_NAME, petCacheSize, petCacheTtl) : null;
   }
 
   @Override
@@ -48,23 +128,69 @@ public class PetsImpl implements Pets {
   }
 
   @Override
-  public void getPets(String query, int offset, int limit, String lang, Map<String, String> okapiHeaders, SingleObserver<Response> observer, Context vertxContext) {
+  public void getPets(String cursor, String totalRecords, String query, int offset, int limit, String lang, Map<String, String> okapiHeaders, SingleObserver<Response> observer, Context vertxContext) {
+    String countMode = totalRecords == null ? COUNT_AUTO : totalRecords;
+    if (!COUNT_AUTO.equals(countMode) && !COUNT_EXACT.equals(countMode) && !COUNT_NONE.equals(countMode)) {
+      observer.onSuccess(GetPetsResponse.respond400WithTextPlain("totalRecords must be one of auto, exact, none: " + totalRecords));
+      return;
+    }
+    if (cursor != null) {
+      getPetsPage(cursor, countMode, query, limit, observer);
+      return;
+    }
     try {
       PgQuery.PgQueryBuilder queryBuilder = new PgQuery.PgQueryBuilder(ALL_FIELDS, HOMELESS_PETS_TABLE_NAME).query(query).offset(offset).limit(limit);
-      runGetQuery(queryBuilder)
-        .flatMap(this::constructGetResponse)
+      String ifNoneMatch = okapiHeaders.get(ETags.IF_NONE_MATCH);
+      Single.zip(runGetQuery(queryBuilder), countPets(query, countMode),
+          (page, count) -> constructGetResponse(page, count, ifNoneMatch))
+        .onErrorReturn(e -> GetPetsResponse.respond500WithTextPlain(Response.Status.INTERNAL_SERVER_ERROR.getReasonPhrase()))
         .subscribe(observer);
     } catch (Exception e) {
       observer.onSuccess(GetPetsResponse.respond500WithTextPlain(Response.Status.INTERNAL_SERVER_ERROR.getReasonPhrase()));
     }
   }
 
+  /**
+   * page by cursor - the database seeks to the page instead of skipping offset records
+   */
+  private void getPetsPage(String cursor, String countMode, String query, int limit, SingleObserver<Response> observer) {
+    KeysetQuery keysetQuery;
+    Single<Optional<PostgresClient.Count>> count;
+    try {
+      keysetQuery = new KeysetQuery(HOMELESS_PETS_TABLE_NAME, query, cursor, limit, KEYSET_SORT_FIELDS);
+      count = countPets(query, countMode);
+    } catch (Exception e) {
+      observer.onSuccess(GetPetsResponse.respond400WithTextPlain(e.getMessage()));
+      return;
+    }
+    Single.zip(pgClient.get(HOMELESS_PETS_TABLE_NAME, Pet.class, keysetQuery), count, (page, total) -> {
+        PetsCollection petsCollection = new PetsCollection();
+        petsCollection.setPets(page.getRecords());
+        setTotalRecords(petsCollection, total);
+        petsCollection.setNext(page.getNext());
+        return (Response) GetPetsResponse.respond200WithApplicationJson(petsCollection);
+      })
+      .onErrorReturn(e -> GetPetsResponse.respond500WithTextPlain(Response.Status.INTERNAL_SERVER_ERROR.getReasonPhrase()))
+      .subscribe(observer);
+  }
+
   @Override
   public void putPetsById(String id, String lang, Pet entity, Map<String, String> okapiHeaders, SingleObserver<Response> observer, Context vertxContext) {
     try {
       vertxContext.runOnContext(v -> {
         entity.setId(id);
+        String ifMatch = okapiHeaders.get(ETags.IF_MATCH);
+        if (ifMatch != null && !"*".equals(ifMatch.trim())) {
+          // only written if nobody else did since the client read the pet
+          updatePetIfMatch(entity, ETags.versions(ifMatch))
+            .doOnSuccess(result -> invalidate(id))
+            .map(this::constructConditionalPutResponse)
+            .onErrorReturn(e -> PutPetsByIdResponse.respond500WithTextPlain(Response.Status.INTERNAL_SERVER_ERROR.getReasonPhrase()))
+            .subscribe(observer);
+          return;
+        }
         updatePet(entity)
+          .doOnSuccess(result -> invalidate(id))
           .flatMap(this::constructPutResponse)
           .subscribe(observer);
       });
@@ -76,10 +202,22 @@ public class PetsImpl implements Pets {
   @Override
   public void getPetsById(String id, String lang, Map<String, String> okapiHeaders, SingleObserver<Response> observer, Context vertxContext) {
     try {
-      vertxContext.runOnContext(v ->
+      vertxContext.runOnContext(v -> {
+        String ifNoneMatch = okapiHeaders.get(ETags.IF_NONE_MATCH);
+        EntityCache petCache = petCache();
+        // by the id as requested, the database matches it case sensitively too
+        EntityCache.Entry cached = petCache == null ? null : petCache.get(id);
+        if (cached != null) {
+          String etag = ETags.of(cached.getVersion());
+          observer.onSuccess(ETags.matches(ifNoneMatch, etag) ? notModified(etag) : jsonResponse(cached.getBytes(), etag));
+          return;
+        }
+        long stamp = petCache == null ? 0 : petCache.stamp();
         runGetPetById(id)
-          .flatMap(this::constructGetByIdResponse)
-          .subscribe(observer));
+          .map(versioned -> constructGetByIdResponse(id, versioned, petCache, stamp, ifNoneMatch))
+          .onErrorReturn(e -> GetPetsByIdResponse.respond500WithTextPlain(Response.Status.INTERNAL_SERVER_ERROR.getReasonPhrase()))
+          .subscribe(observer);
+      });
     } catch (Exception e) {
       observer.onSuccess(GetPetsByIdResponse.respond500WithTextPlain(Response.Status.INTERNAL_SERVER_ERROR.getReasonPhrase()));
     }
@@ -87,7 +225,18 @@ public class PetsImpl implements Pets {
 
   @Override
   public void deletePetsById(String id, String lang, Map<String, String> okapiHeaders, SingleObserver<Response> observer, Context vertxContext) {
-
+    try {
+      vertxContext.runOnContext(v ->
+        pgClient.delete(HOMELESS_PETS_TABLE_NAME, new Criterion(constructCriteria("'id'", id)))
+          .doOnSuccess(result -> invalidate(id))
+          .map(result -> result.getUpdated() == 0
+            ? DeletePetsByIdResponse.respond404WithTextPlain(Response.Status.NOT_FOUND.getReasonPhrase())
+            : DeletePetsByIdResponse.respond204())
+          .onErrorReturn(e -> DeletePetsByIdResponse.respond500WithTextPlain(Response.Status.INTERNAL_SERVER_ERROR.getReasonPhrase()))
+          .subscribe(observer));
+    } catch (Exception e) {
+      observer.onSuccess(DeletePetsByIdResponse.respond500WithTextPlain(Response.Status.INTERNAL_SERVER_ERROR.getReasonPhrase()));
+    }
   }
 
   @Override
@@ -96,100 +245,121 @@ public class PetsImpl implements Pets {
   }
 
   @Override
-  public void postPetsAdoptById(String id, Map<String, String> okapiHeaders, SingleObserver<Response> observer, Context vertxContext) {
+  public void getPetsExport(String query, Map<String, String> okapiHeaders, SingleObserver<Response> observer, Context vertxContext) {
     try {
-      vertxContext.runOnContext(v -> {
-        Pet entity = new Pet();
-        entity.setId(id);
-        PgTransaction<Pet> pgTransaction = new PgTransaction<>(entity);
-        startTx(pgTransaction)
-          .flatMap(this::findPet)
-          .flatMap(this::vacateShelterPlace)
-          .flatMap(this::adoptPet)
-          .flatMap(this::endTx)
-          .flatMap(this::constructAdoptResponse)
-          .subscribe(observer);
-      });
+      PgQuery pgQuery = new PgQuery.PgQueryBuilder(ALL_FIELDS, HOMELESS_PETS_TABLE_NAME).query(query).build();
+      // the rows are only read once the response is written, one line per pet
+      Flowable<Buffer> lines = pgClient.streamJsonb(pgQuery, exportFetchSize)
+        .map(json -> Buffer.buffer(json.length() + 1).appendString(json).appendByte((byte) '\n'));
+      observer.onSuccess(GetPetsExportResponse.respond200WithApplicationXNdjson(lines));
+    } catch (QueryValidationException | CQLParseException e) {
+      observer.onSuccess(GetPetsExportResponse.respond400WithTextPlain(e.getMessage()));
     } catch (Exception e) {
-      observer.onSuccess(PostPetsAdoptByIdResponse.respond500WithTextPlain(Response.Status.INTERNAL_SERVER_ERROR.getReasonPhrase()));
+      observer.onSuccess(GetPetsExportResponse.respond500WithTextPlain(Response.Status.INTERNAL_SERVER_ERROR.getReasonPhrase()));
     }
   }
 
-  private Single<PgTransaction<Pet>> startTx(PgTransaction<Pet> tx) {
+  @Override
+  public void postPetsImport(RoutingContext routingContext, Map<String, String> okapiHeaders, SingleObserver<Response> observer, Context vertxContext) {
     try {
-      tx.sqlConnection = pgClient.startTx().blockingGet();
-      return Single.just(tx);
+      HttpServerRequest request = routingContext.request();
+      // anything but ndjson is taken as a json array
+      boolean jsonArray = !StringUtils.defaultString(request.getHeader(HttpHeaders.CONTENT_TYPE)).startsWith(NDJSON);
+      new BulkImport<>(pgClient, HOMELESS_PETS_TABLE_NAME, Pet.class, Pet::setId, importBatchSize, importMaxRecordSize)
+        .run(request, jsonArray)
+        .map(this::constructImportResponse)
+        .onErrorReturn(e -> e instanceof BulkImport.RecordTooLargeException
+          ? PostPetsImportResponse.respond413WithTextPlain(e.getMessage())
+          : PostPetsImportResponse.respond400WithTextPlain(e.getMessage()))
+        .subscribe(observer);
     } catch (Exception e) {
-      return Single.error(e);
+      observer.onSuccess(PostPetsImportResponse.respond500WithTextPlain(Response.Status.INTERNAL_SERVER_ERROR.getReasonPhrase()));
     }
   }
 
-  private Single<PgTransaction<Pet>> findPet(PgTransaction<Pet> tx) {
+  @Override
+  public void postPetsAdopt(AdoptionRequest entity, Map<String, String> okapiHeaders, SingleObserver<Response> observer, Context vertxContext) {
     try {
-      Criteria idCrit = constructCriteria("'id'", tx.entity.getId());
-      Results<Pet> results = pgClient.get(tx.sqlConnection, HOMELESS_PETS_TABLE_NAME, Pet.class, new Criterion(idCrit), true, false).blockingGet();
-      if (results.getResults().isEmpty()) {
-        tx.entity = null;
-      } else {
-        List<Pet> pets = results.getResults();
-        tx.entity.setGenus(pets.get(0).getGenus());
-        tx.entity.setQuantity(pets.get(0).getQuantity());
-      }
-      return Single.just(tx);
+      vertxContext.runOnContext(v ->
+        pgClient.moveAll(HOMELESS_PETS_TABLE_NAME, ADOPTED_PETS_TABLE_NAME, entity.getIds(), Pet.class, ADOPTED_FIELDS)
+          .doOnSuccess(adopted -> invalidate(adopted.keySet()))
+          .map(adopted -> constructAdoptionsResponse(entity.getIds(), adopted))
+          .subscribe(observer));
     } catch (Exception e) {
-      return Single.error(e);
+      observer.onSuccess(PostPetsAdoptResponse.respond500WithTextPlain(Response.Status.INTERNAL_SERVER_ERROR.getReasonPhrase()));
     }
   }
 
-  private Single<PgTransaction<Pet>> vacateShelterPlace(PgTransaction<Pet> tx) {
+  @Override
+  public void postPetsAdoptById(String id, Map<String, String> okapiHeaders, SingleObserver<Response> observer, Context vertxContext) {
     try {
-      if (tx.entity != null) {
-        Criteria idCrit = constructCriteria("'id'", tx.entity.getId());
-        UpdateResult result = pgClient.delete(tx.sqlConnection, HOMELESS_PETS_TABLE_NAME, new Criterion(idCrit)).blockingGet();
-        if (result.getUpdated() == 0) {
-          tx.entity = null;
-        }
-      }
-      return Single.just(tx);
+      vertxContext.runOnContext(v ->
+        constructAdoptResponse(adoptPet(id))
+          .subscribe(observer));
     } catch (Exception e) {
-      pgClient.rollbackTx(tx.sqlConnection);
-      return Single.error(e);
+      observer.onSuccess(PostPetsAdoptByIdResponse.respond500WithTextPlain(Response.Status.INTERNAL_SERVER_ERROR.getReasonPhrase()));
     }
   }
 
-  private Single<PgTransaction<Pet>> adoptPet(PgTransaction<Pet> tx) {
-    try {
-      if (tx.entity != null) {
-        Pet entity = new Pet();
-        entity.setGenus(tx.entity.getGenus());
-        entity.setQuantity(tx.entity.getQuantity());
-        Results<Pet> results = pgClient.save(tx.sqlConnection, ADOPTED_PETS_TABLE_NAME, entity).blockingGet();
-        if (!results.getResults().isEmpty()) {
-          entity.setId(results.getResults().get(0).getId());
-          tx.entity = entity;
-          return Single.just(tx);
-        } else {
-          pgClient.rollbackTx(tx.sqlConnection);
-          return Single.error(new RuntimeException("Couldn't adopt pet"));
-        }
-      }
-      return Single.just(tx);
-    } catch (Exception e) {
-      pgClient.rollbackTx(tx.sqlConnection);
-      return Single.error(e);
-    }
+  /**
+   * Moves the pet from the shelter to the adopted pets in one statement, the adopted pet gets a new id
+   *
+   * @return the adopted pet, empty if there is no such pet in the shelter
+   */
+  private Maybe<Pet> adoptPet(String id) {
+    Criteria idCrit = constructCriteria("'id'", id);
+    return pgClient.move(HOMELESS_PETS_TABLE_NAME, ADOPTED_PETS_TABLE_NAME, new Criterion(idCrit), Pet.class, ADOPTED_FIELDS)
+      .doOnSuccess(results -> invalidate(id))
+      .flatMapMaybe(results -> results.getResults().isEmpty() ? Maybe.<Pet>empty() : Maybe.just(results.getResults().get(0)));
   }
 
-  private Single<PgTransaction<Pet>> endTx(PgTransaction<Pet> tx) {
-    pgClient.endTx(tx.sqlConnection);
-    return Single.just(tx);
+  private Single<Response> constructAdoptResponse(Maybe<Pet> adopted) {
+    return adopted
+      .map(pet -> (Response) PostPetsAdoptByIdResponse.respond201WithApplicationJson(pet))
+      .toSingle(PostPetsAdoptByIdResponse.respond404WithTextPlain(Response.Status.NOT_FOUND.getReasonPhrase()));
   }
 
-  private Single<Response> constructAdoptResponse(PgTransaction<Pet> tx) {
-    if (tx.entity != null) {
-      return Single.just(PostPetsAdoptByIdResponse.respond201WithApplicationJson(tx.entity));
+  /**
+   * @param adopted  the adopted pets by the lower case id they had in the shelter
+   * @return one outcome per distinct requested id, ignoring case, in the order and spelling of the request
+   */
+  private Response constructAdoptionsResponse(List<String> ids, Map<String, Pet> adopted) {
+    Map<String, String> distinct = new LinkedHashMap<>();
+    for (String id : ids) {
+      distinct.putIfAbsent(id == null ? null : id.toLowerCase(Locale.ROOT), id);
     }
-    return Single.just(PostPetsAdoptByIdResponse.respond404WithTextPlain(Response.Status.NOT_FOUND.getReasonPhrase()));
+    List<Adoption> adoptions = new ArrayList<>();
+    for (Map.Entry<String, String> id : distinct.entrySet()) {
+      Adoption adoption = new Adoption();
+      adoption.setId(id.getValue());
+      Pet pet = id.getKey() == null ? null : adopted.get(id.getKey());
+      if (pet != null) {
+        adoption.setStatus(Adoption.Status.ADOPTED);
+        adoption.setPet(pet);
+      } else {
+        adoption.setStatus(Adoption.Status.NOT_FOUND);
+      }
+      adoptions.add(adoption);
+    }
+    AdoptionsCollection adoptionsCollection = new AdoptionsCollection();
+    adoptionsCollection.setAdoptions(adoptions);
+    adoptionsCollection.setTotalRecords(adoptions.size());
+    return PostPetsAdoptResponse.respond200WithApplicationJson(adoptionsCollection);
+  }
+
+  private Response constructImportResponse(BulkImport.Summary summary) {
+    List<ImportError> errors = new ArrayList<>(summary.getErrors().size());
+    for (BulkImport.LineError lineError : summary.getErrors()) {
+      ImportError error = new ImportError();
+      error.setLine(lineError.getLine());
+      error.setMessage(lineError.getMessage());
+      errors.add(error);
+    }
+    ImportSummary importSummary = new ImportSummary();
+    importSummary.setImported(summary.getImported());
+    importSummary.setFailed(summary.getFailed());
+    importSummary.setErrors(errors);
+    return PostPetsImportResponse.respond200WithApplicationJson(importSummary);
   }
 
   private Single<Results<Pet>> savePet(Pet pet) {
@@ -207,25 +377,53 @@ public class PetsImpl implements Pets {
     return Single.just(PostPetsResponse.respond500WithTextPlain(Response.Status.INTERNAL_SERVER_ERROR.getReasonPhrase()));
   }
 
-  private Single<Results<Pet>> runGetQuery(PgQuery.PgQueryBuilder queryBuilder) {
+  private Single<Versioned<Results<Pet>>> runGetQuery(PgQuery.PgQueryBuilder queryBuilder) {
     try {
       PgQuery query = queryBuilder.build();
-      return pgClient.get(query.getTable(), Pet.class, query.getFields(), query.getCql(), true, false);
+      return pgClient.getVersioned(query, Pet.class);
     } catch (Exception e) {
-      return Single.just(new Results<>());
+      return Single.error(e);
     }
   }
 
-  private Single<Response> constructGetResponse(Results<Pet> results) {
-    if (results.getResults() != null) {
-      List<Pet> petsList = results.getResults();
-      int totalRecords = petsList.size();
-      PetsCollection petsCollection = new PetsCollection();
-      petsCollection.setPets(petsList);
-      petsCollection.setTotalRecords(totalRecords);
-      return Single.just(GetPetsResponse.respond200WithApplicationJson(petsCollection));
+  /**
+   * The entity tag of the page covers its records and the total, 304 without mapping the pets if the client
+   * has it already
+   */
+  private Response constructGetResponse(Versioned<Results<Pet>> page, Optional<PostgresClient.Count> count,
+                                        String ifNoneMatch) throws Exception {
+    String etag = ETags.of(page.getVersion() + count.map(c -> "-" + c.getValue() + (c.isEstimated() ? "e" : "")).orElse(""));
+    if (ETags.matches(ifNoneMatch, etag)) {
+      return notModified(etag);
+    }
+    PetsCollection petsCollection = new PetsCollection();
+    petsCollection.setPets(page.get().getResults());
+    setTotalRecords(petsCollection, count);
+    return withETag(GetPetsResponse.respond200WithApplicationJson(petsCollection), etag);
+  }
+
+  /**
+   * Counts the pets matching the query as asked for by the count mode
+   *
+   * @return the count, empty if none is asked for
+   */
+  private Single<Optional<PostgresClient.Count>> countPets(String query, String countMode) throws Exception {
+    if (COUNT_NONE.equals(countMode)) {
+      return Single.just(Optional.empty());
+    }
+    PgQuery pgQuery = new PgQuery.PgQueryBuilder(ALL_FIELDS, HOMELESS_PETS_TABLE_NAME).query(query).build();
+    return pgClient.count(pgQuery.getTable(), pgQuery.getFilter(), COUNT_EXACT.equals(countMode), countEstimateThreshold)
+      .map(Optional::of);
+  }
+
+  private static void setTotalRecords(PetsCollection petsCollection, Optional<PostgresClient.Count> count) {
+    if (count.isPresent()) {
+      petsCollection.setTotalRecords((int) Math.min(Integer.MAX_VALUE, count.get().getValue()));
+      petsCollection.setTotalRecordsType(count.get().isEstimated()
+        ? PetsCollection.TotalRecordsType.ESTIMATED : PetsCollection.TotalRecordsType.EXACT);
+    } else {
+      petsCollection.setTotalRecordsType(PetsCollection.TotalRecordsType.NONE);
     }
-    return Single.just(GetPetsResponse.respond500WithTextPlain(Response.Status.INTERNAL_SERVER_ERROR.getReasonPhrase()));
   }
 
   private Single<UpdateResult> updatePet(Pet pet) {
@@ -237,6 +435,31 @@ public class PetsImpl implements Pets {
     }
   }
 
+  private Single<Versioned<Boolean>> updatePetIfMatch(Pet pet, String[] versions) {
+    try {
+      Criteria idCrit = constructCriteria("'id'", pet.getId());
+      return pgClient.updateIfVersion(HOMELESS_PETS_TABLE_NAME, pet, new Criterion(idCrit), versions);
+    } catch (Exception e) {
+      return Single.error(e);
+    }
+  }
+
+  /**
+   * @param result  true with the new version if updated, false with the current one if the pet has changed
+   */
+  private Response constructConditionalPutResponse(Versioned<Boolean> result) throws Exception {
+    if (result.getVersion() == null) {
+      return PutPetsByIdResponse.respond404WithTextPlain(Response.Status.NOT_FOUND.getReasonPhrase());
+    } else if (!result.get()) {
+      return Response.status(Response.Status.PRECONDITION_FAILED)
+        .header(HttpHeaders.CONTENT_TYPE.toString(), "text/plain")
+        .header(ETags.ETAG, ETags.of(result.getVersion()))
+        .entity(Response.Status.PRECONDITION_FAILED.getReasonPhrase())
+        .build();
+    }
+    return Response.noContent().header(ETags.ETAG, ETags.of(result.getVersion())).build();
+  }
+
   private Single<Response> constructPutResponse(UpdateResult result) {
     if (result.getUpdated() == 0) {
       return Single.just(PutPetsByIdResponse.respond404WithTextPlain(Response.Status.NOT_FOUND.getReasonPhrase()));
@@ -244,22 +467,74 @@ public class PetsImpl implements Pets {
     return Single.just(PutPetsByIdResponse.respond204());
   }
 
-  private Single<Results<Pet>> runGetPetById(String id) {
+  private Single<Versioned<Results<Pet>>> runGetPetById(String id) {
     try {
       Criteria idCrit = constructCriteria("'id'", id);
-      return pgClient.get(HOMELESS_PETS_TABLE_NAME, Pet.class, new Criterion(idCrit), true, false);
+      return pgClient.getVersioned(HOMELESS_PETS_TABLE_NAME, Pet.class, new Criterion(idCrit));
     } catch (Exception e) {
-      return Single.just(new Results<>());
+      return Single.error(e);
+    }
+  }
+
+  /**
+   * @param petCache  null if turned off
+   * @param stamp  of the pet cache, taken before the pet was read
+   */
+  private Response constructGetByIdResponse(String id, Versioned<Results<Pet>> versioned, EntityCache petCache, long stamp,
+                                            String ifNoneMatch) throws Exception {
+    if (versioned.getVersion() == null) {
+      return GetPetsByIdResponse.respond404WithTextPlain(Response.Status.NOT_FOUND.getReasonPhrase());
+    }
+    String etag = ETags.of(versioned.getVersion());
+    if (ETags.matches(ifNoneMatch, etag)) {
+      return notModified(etag);
     }
+    Pet pet = versioned.get().getResults().get(0);
+    if (petCache == null) {
+      return withETag(GetPetsByIdResponse.respond200WithApplicationJson(pet), etag);
+    }
+    // serialized once, for the cache and the response
+    byte[] json = MAPPER.writeValueAsBytes(pet);
+    petCache.put(id, json, versioned.getVersion(), stamp);
+    return jsonResponse(json, etag);
+  }
+
+  /**
+   * @return 200 response with the serialized pet as body, written as is
+   */
+  private static Response jsonResponse(byte[] json, String etag) {
+    BinaryOutStream body = new BinaryOutStream();
+    body.setData(json);
+    return Response.status(Response.Status.OK)
+      .header(HttpHeaders.CONTENT_TYPE.toString(), JSON)
+      .header(ETags.ETAG, etag)
+      .entity(body)
+      .build();
+  }
+
+  private static Response notModified(String etag) {
+    return Response.notModified().header(ETags.ETAG, etag).build();
   }
 
-  private Single<Response> constructGetByIdResponse(Results<Pet> results) {
-    if (results.getResults() == null) {
-      return Single.just(GetPetsByIdResponse.respond500WithTextPlain(Response.Status.INTERNAL_SERVER_ERROR.getReasonPhrase()));
-    } else if (results.getResults().isEmpty()) {
-      return Single.just(GetPetsByIdResponse.respond404WithTextPlain(Response.Status.NOT_FOUND.getReasonPhrase()));
+  private static Response withETag(Response response, String etag) {
+    return Response.fromResponse(response).header(ETags.ETAG, etag).build();
+  }
+
+  private void invalidate(String id) {
+    EntityCache petCache = petCache();
+    if (petCache != null) {
+      petCache.invalidate(id);
+    }
+  }
+
+  /**
+   * @param ids  matched by uuid, whatever their case
+   */
+  private void invalidate(Collection<String> ids) {
+    EntityCache petCache = petCache();
+    if (petCache != null) {
+      petCache.invalidateAllIgnoreCase(ids);
     }
-    return Single.just(GetPetsByIdResponse.respond200WithApplicationJson(results.getResults().get(0)));
   }
 
   /**
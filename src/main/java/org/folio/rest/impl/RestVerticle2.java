@@ -1,19 +1,21 @@
 package org.folio.rest.impl;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
 import com.google.common.base.Joiner;
 import com.google.common.io.ByteStreams;
+import io.reactivex.Flowable;
 import io.reactivex.SingleObserver;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerFileUpload;
@@ -30,16 +32,31 @@ import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.BodyHandler;
 import io.vertx.ext.web.handler.StaticHandler;
 import io.vertx.reactivex.SingleHelper;
+import io.vertx.reactivex.core.RxHelper;
 import org.apache.commons.collections4.map.CaseInsensitiveMap;
 import org.apache.commons.lang3.StringUtils;
 import org.folio.rest.MappedClasses;
-import org.folio.rest.annotations.Stream;
 import org.folio.rest.jaxrs.model.Error;
 import org.folio.rest.jaxrs.model.Errors;
 import org.folio.rest.jaxrs.model.Metadata;
 import org.folio.rest.jaxrs.model.Parameter;
 import org.folio.rest.jaxrs.model.TenantAttributes;
 import org.folio.rest.persist.PostgresClient;
+import org.folio.rest.routing.AccessLog;
+import org.folio.rest.routing.BodyValidator;
+import org.folio.rest.routing.Operation;
+import org.folio.rest.routing.JsonBodyWriter;
+import org.folio.rest.routing.LoopMonitor;
+import org.folio.rest.routing.OperationInvoker;
+import org.folio.rest.routing.RequestMetrics;
+import org.folio.rest.routing.ParamSpec;
+import org.folio.rest.routing.ResponseCompressor;
+import org.folio.rest.routing.ResponseStreamer;
+import org.folio.rest.routing.RouteMatch;
+import org.folio.rest.routing.RouteTable;
+import org.folio.rest.routing.StageTimer;
+import org.folio.rest.routing.StageTimer.Stage;
+import org.folio.rest.routing.TenantInstanceCache;
 import org.folio.rest.tools.AnnotationGrabber;
 import org.folio.rest.tools.ClientGenerator;
 import org.folio.rest.tools.PomReader;
@@ -54,11 +71,13 @@ import org.folio.rest.tools.utils.InterfaceToImpl;
 import org.folio.rest.tools.utils.JsonUtils;
 import org.folio.rest.tools.utils.JwtUtils;
 import org.folio.rest.tools.utils.LogUtil;
-import org.folio.rest.tools.utils.ObjectMapperTool;
 import org.folio.rest.tools.utils.OutStream;
 import org.folio.rest.tools.utils.ResponseImpl;
 import org.folio.rest.tools.utils.ValidationHelper;
 import org.folio.rest.tools.utils.VertxUtils;
+import org.folio.rest.utils.ETags;
+import org.folio.rest.utils.EntityCache;
+import org.folio.rest.utils.PgQuery;
 import org.folio.rulez.Rules;
 import org.kie.api.runtime.KieSession;
 import org.kie.api.runtime.rule.FactHandle;
@@ -69,30 +88,29 @@ import javax.mail.internet.InternetHeaders;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMultipart;
 import javax.validation.ConstraintViolation;
-import javax.validation.Validation;
-import javax.validation.ValidatorFactory;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
-import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
 import java.util.function.Consumer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class RestVerticle2 extends AbstractVerticle {
 
@@ -124,15 +142,49 @@ public class RestVerticle2 extends AbstractVerticle {
   private static final String       SUPPORTED_CONTENT_TYPE_TEXT_DEF = "text/plain";
   private static final String       SUPPORTED_CONTENT_TYPE_XML_DEF  = "application/xml";
   private static final String       SUPPORTED_CONTENT_TYPE_FORM     = "application/x-www-form-urlencoded";
-  private static final String       FILE_UPLOAD_PARAM               = "javax.mail.internet.MimeMultipart";
   private static MetricsService     serverMetrics                   = null;
-  private static KieSession         droolsSession;
+  // replaces the session of every instance if set, see updateDroolsSession
+  private static volatile KieSession droolsSessionOverride;
   private static String             className                       = RestVerticle2.class.getName();
   private static final Logger log                             = LoggerFactory.getLogger(className);
-  private static final ObjectMapper MAPPER                          = ObjectMapperTool.getMapper();
+  // spans of the timed requests, see StageTimer
+  private static final Logger timingLog                       = LoggerFactory.getLogger("org.folio.rest.timing");
   private static final String       DEFAULT_SCHEMA                  = "public";
-
-  private static ValidatorFactory   validationFactory;
+  private static final String       PRETTY_PARAM                    = "pretty";
+  private static final String       ACCESS_LOG_CAPACITY             = "access.log.capacity";
+  private static final String       ACCESS_LOG_BATCH                = "access.log.batch";
+  private static final String       ACCESS_LOG_FILE                 = "access.log.file";
+  private static final String       ACCESS_LOG_SAMPLE               = "access.log.sample";
+  private static final String       HTTP_BODY_LIMIT                 = "http.body.limit";
+  private static final long         DEFAULT_BODY_LIMIT              = 10 * 1024 * 1024L;
+  private static final String       HTTP_COMPRESSION                = "http.compression";
+  private static final String       HTTP_COMPRESSION_LEVEL          = "http.compression.level";
+  private static final String       HTTP_COMPRESSION_THRESHOLD      = "http.compression.threshold";
+  private static final int          DEFAULT_COMPRESSION_LEVEL       = 6;
+  private static final int          DEFAULT_COMPRESSION_THRESHOLD   = 1024;
+  private static final String       HTTP_SERVER                     = "http.server";
+  private static final String       INSTANCES                       = "instances";
+  private static final String       LOOP_MONITOR_INTERVAL           = "loop.monitor.interval";
+  private static final String       METRICS_PATH                    = "/admin/metrics";
+  private static final String       METRICS_ROUTE                   = "metrics.route";
+  private static final String       METRICS_START                   = "metrics.start";
+  private static final String       METRICS_TENANTS_MAX             = "metrics.tenants.max";
+  private static final String       METRICS_UNMATCHED_ROUTE         = "unmatched";
+  private static final String       PROMETHEUS_CONTENT_TYPE         = "text/plain; version=0.0.4; charset=utf-8";
+  private static final String       LOOP_BLOCKED_THRESHOLD          = "loop.blocked.threshold";
+  private static final String       SECONDARY_INSTANCE              = "instances.secondary";
+  private static final String       SERVER_TIMING                   = "Server-Timing";
+  private static final String       STAGE_TIMER                     = "stage.timer";
+  private static final String       TIMING_HEADER                   = "timing.header";
+  private static final String       TIMING_SAMPLE                   = "timing.sample";
+  private static final String       TENANT_INSTANCES_REUSE          = "tenant.instances.reuse";
+  private static final String       TENANT_IDLE_TIMEOUT             = "tenant.idle.timeout";
+  private static final long         DEFAULT_TENANT_IDLE_TIMEOUT     = 30 * 60 * 1000L;
+  private static final long         TENANT_EVICTION_INTERVAL        = 60 * 1000L;
+  private static final String       DB_POOL_SIZE                    = "db.pool.size";
+  private static final String       DB_POOL_MAX_WAITING             = "db.pool.max.waiting";
+
+  private static RouteTable         sharedRouteTable;
   private static String             deploymentId                     = "";
 
   private final Messages messages                        = Messages.getInstance();
@@ -140,6 +192,28 @@ public class RestVerticle2 extends AbstractVerticle {
 
   private EventBus eventBus;
 
+  // instances of the impl classes reused per tenant - only touched from this verticle's event loop
+  private final TenantInstanceCache instanceCache = new TenantInstanceCache();
+  private boolean reuseInstances = true;
+  // deployed by the first instance
+  private boolean secondary;
+  // not thread safe, one per instance
+  private KieSession droolsSession;
+  private LoopMonitor loopMonitor;
+  // http server options passed as http.server.<option>=value args
+  private final JsonObject cmdServerOptions = new JsonObject();
+  // gzips the responses the client accepts compressed, null if turned off or the http server compresses them
+  private ResponseCompressor compressor;
+  // share of the requests timed by stage, 0 for none, and whether they get a Server-Timing header
+  private double timingSample;
+  private boolean timingHeader;
+
+  // paths for which the function receives the routing context as an extra parameter - read once from the pom
+  private static final Set<String> routingContextPaths = loadPomPaths("generate_routing_context");
+  // paths whose request body is not read into memory up front - the function gets the request paused
+  // (through the routing context) and reads the body at its own pace
+  private static final Set<String> streamedBodyPaths = loadPomPaths("stream_request_body");
+
   // this is only to run via IDE - otherwise see pom which runs the verticle and
   // requires passing -cluster and preferable -cluster-home args
   public static void main(String[] args) {
@@ -147,13 +221,6 @@ public class RestVerticle2 extends AbstractVerticle {
     vertx.deployVerticle(new RestVerticle2());
   }
 
-  static {
-    //validationFactory used to validate the pojos which are created from the json
-    //passed in the request body in put and post requests. The constraints validated by this factory
-    //are the ones in the json schemas accompanying the raml files
-    validationFactory = Validation.buildDefaultValidatorFactory();
-  }
-
   // https://www.w3.org/Protocols/rfc2616/rfc2616-sec14.html
   // first match - no q val check
   static String acceptCheck(JsonArray l, String h) {
@@ -177,23 +244,38 @@ public class RestVerticle2 extends AbstractVerticle {
 
     readInGitProps();
 
+    // the first instance runs the hooks and deploys the others, which share what it built
+    secondary = config().getBoolean(SECONDARY_INSTANCE, false);
+
     //process cmd line arguments
     cmdProcessing();
 
-    deploymentId = UUID.randomUUID().toString();
+    if (!secondary) {
+      deploymentId = UUID.randomUUID().toString();
+      // requests are logged by a background writer, not on the event loops
+      AccessLog.start(config().getInteger(ACCESS_LOG_CAPACITY, AccessLog.DEFAULT_CAPACITY),
+        config().getInteger(ACCESS_LOG_BATCH, AccessLog.DEFAULT_BATCH_SIZE),
+        config().getDouble(ACCESS_LOG_SAMPLE, 1d), config().getString(ACCESS_LOG_FILE));
+      // the tenant label comes from a header, the tenants with their own series are capped
+      RequestMetrics.setMaxTenants(config().getInteger(METRICS_TENANTS_MAX, RequestMetrics.DEFAULT_MAX_TENANTS));
+    }
 
     LogUtil.formatLogMessage(className, "start", "metrics enabled: " + vertx.isMetricsEnabled());
 
     serverMetrics = MetricsService.create(vertx);
 
-    // maps paths found in raml to the generated functions to route to when the paths are requested
-    MappedClasses mappedURLs = populateConfig();
+    // share of the requests timed by stage, see StageTimer
+    timingSample = config().getDouble(TIMING_SAMPLE, 0d);
+    timingHeader = config().getBoolean(TIMING_HEADER, false);
 
-    // set of exposed urls as declared in the raml
-    Set<String> urlPaths = mappedURLs.getAvailURLs();
+    // lag of this instance's event loop and how long the functions hold it, see getLoopMetrics()
+    loopMonitor = LoopMonitor.start(vertx, config().getLong(LOOP_MONITOR_INTERVAL, LoopMonitor.DEFAULT_INTERVAL),
+      config().getLong(LOOP_BLOCKED_THRESHOLD, LoopMonitor.DEFAULT_BLOCKED_THRESHOLD));
 
-    // create a map of regular expression to url path
-    Map<String, Pattern> regex2Pattern = mappedURLs.buildURLRegex();
+    // dispatch table of the urls declared in the raml - resolves path, http method, path params
+    // and the parameter metadata of the function to call without any per request regex or json access,
+    // built once and shared by all instances
+    RouteTable routeTable = routeTable();
 
     // Create a router object.
     Router router = Router.router(vertx);
@@ -218,8 +300,21 @@ public class RestVerticle2 extends AbstractVerticle {
     }
 
     // needed so that we get the body content of the request - note that this
-    // will read the entire body into memory
-    final BodyHandler handler = BodyHandler.create();
+    // will read the entire body into memory, up to the limit
+    // requests to paths with a streamed body skip it
+    final long bodyLimit = config().getLong(HTTP_BODY_LIMIT, DEFAULT_BODY_LIMIT);
+    final BodyHandler bodyHandler = BodyHandler.create().setBodyLimit(bodyLimit);
+    final Handler<RoutingContext> handler = rc -> {
+      if (streamedBodyPaths.contains(rc.request().path())) {
+        rc.next();
+      } else if (bodyLimit >= 0 && requestBytes(rc.request()) > bodyLimit) {
+        // declared too large - rejected before anything is buffered, the body handler
+        // stops bodies without a length once they pass the limit
+        rc.fail(413);
+      } else {
+        bodyHandler.handle(rc);
+      }
+    };
 
     // IMPORTANT!!!
     // the body of the request will be read into memory for ALL PUT requests
@@ -232,9 +327,11 @@ public class RestVerticle2 extends AbstractVerticle {
     router.post().consumes(SUPPORTED_CONTENT_TYPE_TEXT_DEF).handler(handler);
     router.post().consumes(SUPPORTED_CONTENT_TYPE_XML_DEF).handler(handler);
     router.post().consumes(SUPPORTED_CONTENT_TYPE_FORM).handler(handler);
+    // request latency histograms, byte counters and event loop health for prometheus to scrape
+    router.get(METRICS_PATH).handler(this::metrics);
     // run pluggable startup code in a class implementing the InitAPI interface
-    // in the "org.folio.rest.impl" package
-    runHook(vv -> {
+    // in the "org.folio.rest.impl" package - once, the other instances start after it has run
+    Handler<AsyncResult<Boolean>> initialized = vv -> {
       if (((Future<?>) vv).failed()) {
         String reason = ((Future<?>) vv).cause().getMessage();
         log.error( messages.getMessage("en", MessageConsts.InitializeVerticleFail, reason));
@@ -245,13 +342,15 @@ public class RestVerticle2 extends AbstractVerticle {
         log.info("init succeeded.......");
         try {
           // startup periodic impl if exists
-          runPeriodicHook();
+          if (!secondary) {
+            runPeriodicHook();
+          }
         } catch (Exception e2) {
           log.error(e2.getMessage(), e2);
         }
         //single handler for all url calls other then documentation
         //which is handled separately
-        router.routeWithRegex("^(?!.*apidocs).*$").handler(rc -> route(mappedURLs, urlPaths, regex2Pattern, rc));
+        router.routeWithRegex("^(?!.*apidocs).*$").handler(rc -> route(routeTable, rc));
         // routes requests on “/assets/*” to resources stored in the “assets”
         // directory.
         router.route("/assets/*").handler(StaticHandler.create("assets"));
@@ -267,6 +366,26 @@ public class RestVerticle2 extends AbstractVerticle {
           port = config().getInteger("http.port", 8081);
         }
 
+        // size of the connection pool of each tenant and how many requests may queue for a connection
+        org.folio.rest.utils.PostgresClient.configurePool(
+          config().getInteger(DB_POOL_SIZE, org.folio.rest.utils.PostgresClient.DEFAULT_POOL_SIZE),
+          config().getInteger(DB_POOL_MAX_WAITING, org.folio.rest.utils.PostgresClient.DEFAULT_MAX_WAIT_QUEUE_SIZE));
+
+        // reuse the impl instances and database clients per tenant, drop them once the tenant is idle
+        reuseInstances = config().getBoolean(TENANT_INSTANCES_REUSE, true);
+        long tenantIdleTimeout = config().getLong(TENANT_IDLE_TIMEOUT, DEFAULT_TENANT_IDLE_TIMEOUT);
+        long evictionInterval = Math.min(TENANT_EVICTION_INTERVAL, tenantIdleTimeout);
+        vertx.setPeriodic(evictionInterval, id -> {
+          instanceCache.evictIdle(tenantIdleTimeout);
+          // clients outlive the instances referencing them by one eviction round
+          org.folio.rest.utils.PostgresClient.closeIdleClients(tenantIdleTimeout + evictionInterval);
+          // the entity caches are shared by all instances, those of idle tenants are dropped like their clients
+          if (!secondary) {
+            EntityCache.evictAllExpired();
+            EntityCache.removeIdleCaches(tenantIdleTimeout + evictionInterval);
+          }
+        });
+
         //check if mock mode requested and set sys param so that http client factory
         //can config itself accordingly
         String mockMode = config().getString(HttpClientMock2.MOCK_MODE);
@@ -279,10 +398,14 @@ public class RestVerticle2 extends AbstractVerticle {
 
         Integer p = port;
 
-        //if client includes an Accept-Encoding header which includes
-        //the supported compressions - deflate or gzip.
-        HttpServerOptions serverOptions = new HttpServerOptions();
-        serverOptions.setCompressionSupported(false);
+        //if client includes an Accept-Encoding header which accepts gzip or deflate the response is
+        //compressed unless it is smaller than the threshold, see sendResponse - the http
+        //server's own compression (http.server.compressionSupported) replaces this if enabled
+        HttpServerOptions serverOptions = serverOptions();
+        if (config().getBoolean(HTTP_COMPRESSION, true) && !serverOptions.isCompressionSupported()) {
+          compressor = new ResponseCompressor(config().getInteger(HTTP_COMPRESSION_LEVEL, DEFAULT_COMPRESSION_LEVEL),
+            config().getInteger(HTTP_COMPRESSION_THRESHOLD, DEFAULT_COMPRESSION_THRESHOLD));
+        }
 
         HttpServer server = vertx.createHttpServer(serverOptions);
         server.requestHandler(router::accept)
@@ -297,6 +420,8 @@ public class RestVerticle2 extends AbstractVerticle {
           result -> {
             if (result.failed()) {
               startFuture.fail(result.cause());
+            } else if (secondary) {
+              startFuture.complete();
             } else {
               try {
                 runPostDeployHook( res2 -> {
@@ -310,231 +435,284 @@ public class RestVerticle2 extends AbstractVerticle {
               LogUtil.formatLogMessage(className, "start", "http server for apis and docs started on port " + p + ".");
               LogUtil.formatLogMessage(className, "start", "Documentation available at: " + "http://localhost:" + Integer.toString(p)
                 + "/apidocs/");
-              startFuture.complete();
+              deployInstances(startFuture);
             }
           });
       }
-    });
+    };
+    if (secondary) {
+      initialized.handle(Future.succeededFuture(true));
+    } else {
+      runHook(initialized);
+    }
+  }
+
+  /**
+   * Deploys the other instances of the verticle, instances in all - by default one per core. Each has its
+   * own event loop, router, tenant instances and drools session, the vert.x http servers listening on the
+   * same port share the connections among them. Skipped if the deployment already asked for several
+   * instances, e.g. by the -instances argument.
+   */
+  private void deployInstances(Future<Void> startFuture) {
+    int instances = config().getInteger(INSTANCES, Runtime.getRuntime().availableProcessors());
+    if (instances <= 1 || context.getInstanceCount() > 1) {
+      startFuture.complete();
+      return;
+    }
+    JsonObject conf = config().copy().put(SECONDARY_INSTANCE, true);
+    vertx.deployVerticle(RestVerticle2.class.getName(),
+      new DeploymentOptions().setConfig(conf).setInstances(instances - 1), res -> {
+        if (res.failed()) {
+          startFuture.fail(res.cause());
+        } else {
+          LogUtil.formatLogMessage(className, "start", instances + " instances deployed");
+          startFuture.complete();
+        }
+      });
+  }
+
+  /**
+   * @return the route table, built on first use - read only, shared by all instances
+   */
+  private static synchronized RouteTable routeTable() {
+    if (sharedRouteTable == null) {
+      // maps paths found in raml to the generated functions to route to when the paths are requested
+      sharedRouteTable = RouteTable.build(populateConfig());
+    }
+    return sharedRouteTable;
+  }
+
+  /**
+   * Transport options of the http server from the http.server block of config(), overridden by
+   * http.server.&lt;option&gt;=value command line args - any HttpServerOptions property by its json name, nested
+   * ones by a dotted name as in http.server.keyStoreOptions.password=secret, e.g.
+   * <pre>
+   * "http.server": {
+   *   "idleTimeout": 60, "tcpNoDelay": true, "tcpFastOpen": true, "acceptBacklog": 1024,
+   *   "maxHeaderSize": 8192, "maxInitialLineLength": 4096,
+   *   "initialSettings": { "maxConcurrentStreams": 1000 },
+   *   "ssl": true, "useAlpn": true, "keyStoreOptions": { ... }
+   * }
+   * </pre>
+   * Without ssl http/2 is served as h2c, by upgrade or prior knowledge, next to http/1.1 on the same port -
+   * with ssl and useAlpn it is negotiated. The tcp options only native transports support apply when vert.x
+   * runs on one (-Dvertx.options.preferNativeTransport=true on linux). Passwords and key material are masked
+   * in the log.
+   */
+  private HttpServerOptions serverOptions() {
+    JsonObject conf = config().getJsonObject(HTTP_SERVER, new JsonObject()).copy().mergeIn(cmdServerOptions, true);
+    HttpServerOptions serverOptions = new HttpServerOptions(conf);
+    LogUtil.formatLogMessage(className, "start", "http server options " + redact(conf).encode()
+      + ", native transport: " + vertx.isNativeTransportEnabled());
+    return serverOptions;
+  }
+
+  /**
+   * @return true for the options holding a password or a key or certificate - the path ones are fine to log
+   */
+  private static boolean isSecretOption(String name) {
+    String lower = name.toLowerCase(Locale.ROOT);
+    return lower.contains("password") || lower.endsWith("value") || lower.endsWith("values");
+  }
+
+  /**
+   * @return a copy of the options with the secret values masked, for logging
+   */
+  private static JsonObject redact(JsonObject options) {
+    JsonObject copy = new JsonObject();
+    for (Map.Entry<String, Object> option : options) {
+      Object value = option.getValue();
+      if (value != null && isSecretOption(option.getKey())) {
+        value = "***";
+      } else if (value instanceof JsonObject) {
+        value = redact((JsonObject) value);
+      } else if (value instanceof JsonArray) {
+        JsonArray array = new JsonArray();
+        for (Object item : (JsonArray) value) {
+          array.add(item instanceof JsonObject ? redact((JsonObject) item) : item);
+        }
+        value = array;
+      }
+      copy.put(option.getKey(), value);
+    }
+    return copy;
   }
 
   /**
    * Handler for all url calls other then documentation.
-   * @param mappedURLs  maps paths found in raml to the generated functions to route to when the paths are requested
-   * @param urlPaths  set of exposed urls as declared in the raml
-   * @param regex2Pattern  create a map of regular expression to url path
+   * @param routeTable  maps paths found in raml to the functions to route to when the paths are requested
    * @param rc  RoutingContext of this URL
    */
-  private void route(MappedClasses mappedURLs, Set<String> urlPaths, Map<String, Pattern> regex2Pattern,
-                     RoutingContext rc) {
+  private void route(RouteTable routeTable, RoutingContext rc) {
     long start = System.nanoTime();
+    // for the requests ended by endRequestWithError
+    rc.put(METRICS_START, start);
     try {
-      //list of regex urls created from urls declared in the raml
-      Iterator<String> iter = urlPaths.iterator();
-      boolean validPath = false;
       boolean[] validRequest = { true };
-      // loop over regex patterns and try to match them against the requested
-      // URL if no match is found, then the requested url is not supported by
+      // resolve the requested url against the urls declared in the raml
+      // if no match is found, then the requested url is not supported by
       // the ramls and we return an error - this has positive security implications as well
-      while (iter.hasNext()) {
-        String regexURL = iter.next();
-        //try to match the requested url to each regex pattern created from the urls in the raml
-        Matcher m = regex2Pattern.get(regexURL).matcher(rc.request().path());
-        if (m.find()) {
-          validPath = true;
-
-          // get the function that should be invoked for the requested
-          // path + requested http_method pair
-          JsonObject ret = mappedURLs.getMethodbyPath(regexURL, rc.request().method().toString());
-          // if a valid path was requested but no function was found
-          if (ret == null) {
-
-            // if the path is valid and the http method is options
-            // assume a cors request
-            if (rc.request().method() == HttpMethod.OPTIONS) {
-              rc.response().end();
-              return;
-            }
+      RouteMatch match = routeTable.lookup(rc.request().path());
+      if (match == null) {
+        // invalid path
+        endRequestWithError(rc, 400, true,
+          messages.getMessage("en", MessageConsts.InvalidURLPath, rc.request().path()), validRequest);
+        return;
+      }
 
-            // the url exists but the http method requested does not match a function
-            // meaning url+http method != a function
-            endRequestWithError(rc, 400, true, messages.getMessage("en", MessageConsts.HTTPMethodNotSupported),
-              validRequest);
-            return;
-          }
-          Class<?> aClass;
-          try {
-            if (validRequest[0]) {
-              int groups = m.groupCount();
-              //pathParams are the place holders in the raml query string
-              //for example /admin/{admin_id}/yyy/{yyy_id} - the content in between the {} are path params
-              //they are replaced with actual values and are passed to the function which the url is mapped to
-              String[] pathParams = new String[groups];
-              for (int i = 0; i < groups; i++) {
-                pathParams[i] = m.group(i + 1);
-              }
+      // get the function that should be invoked for the requested
+      // path + requested http_method pair
+      Operation operation = match.getOperation(rc.request().method());
+      // if a valid path was requested but no function was found
+      if (operation == null) {
 
-              //create okapi headers map and inject into function
-              Map<String, String> okapiHeaders = new CaseInsensitiveMap<>();
-              String []tenantId = new String[]{null};
-              getOkapiHeaders(rc, okapiHeaders, tenantId);
-              String reqId = okapiHeaders.get(OKAPI_REQUESTID_HEADER);
-              if(reqId != null){
-                MDC.put("reqId", "reqId="+reqId);
-              }
-              if(tenantId[0] == null && !rc.request().path().startsWith("/admin")){
-                //if tenant id is not passed in and this is not an /admin request, return error
-                endRequestWithError(rc, 400, true, messages.getMessage("en", MessageConsts.UnableToProcessRequest)
-                  + " Tenant must be set", validRequest);
-              }
+        // if the path is valid and the http method is options
+        // assume a cors request
+        if (rc.request().method() == HttpMethod.OPTIONS) {
+          rc.response().end();
+          return;
+        }
 
-              if (validRequest[0]) {
-                //get interface mapped to this url
-                String iClazz = ret.getString(AnnotationGrabber.CLASS_NAME);
-                // convert from interface to an actual class implementing it, which appears in the impl package
-                aClass = InterfaceToImpl.convert2Impl(RTFConsts.PACKAGE_OF_IMPLEMENTATIONS, iClazz, false).get(0);
-                Object o = null;
-                // call back the constructor of the class - gives a hook into the class not based on the apis
-                // passing the vertx and context objects in to it.
-                try {
-                  o = aClass.getConstructor(Vertx.class, String.class).newInstance(vertx, tenantId[0]);
-                } catch (Exception e) {
-                  // if no such constructor was implemented call the
-                  // default no param constructor to create the object to be used to call functions on
-                  o = aClass.newInstance();
-                }
-                final Object instance = o;
-
-                // function to invoke for the requested url
-                String function = ret.getString(AnnotationGrabber.FUNCTION_NAME);
-                // parameters for the function to invoke
-                JsonObject params = ret.getJsonObject(AnnotationGrabber.METHOD_PARAMS);
-                // all methods in the class whose function is mapped to the called url
-                // needed so that we can get a reference to the Method object and call it via reflection
-                Method[] methods = aClass.getMethods();
-                // what the api will return as output (Accept)
-                JsonArray produces = ret.getJsonArray(AnnotationGrabber.PRODUCES);
-                // what the api expects to get (content-type)
-                JsonArray consumes = ret.getJsonArray(AnnotationGrabber.CONSUMES);
-
-                HttpServerRequest request = rc.request();
-
-                //check that the accept and content-types passed in the header of the request
-                //are as described in the raml
-                checkAcceptContentType(produces, consumes, rc, validRequest);
-
-                // create the array and then populate it by parsing the url parameters which are needed to invoke the function mapped
-                //to the requested URL - array will be populated by parseParams() function
-                Iterator<Entry<String, Object>> paramList = params.iterator();
-                Object[] paramArray = new Object[params.size()];
-                parseParams(rc, paramList, validRequest, consumes, paramArray, pathParams, okapiHeaders);
-
-                //Get method in class to be run for this requested API endpoint
-                Method[] method2Run = new Method[]{null};
-                for (int i = 0; i < methods.length; i++) {
-                  if (methods[i].getName().equals(function)) {
-                    method2Run[0] = methods[i];
-                    break;
-                  }
-                }
-                //is function annotated to receive data in chunks as they come in.
-                //Note that the function controls the logic to this if this is the case
-                boolean streamData = isStreamed(method2Run[0].getAnnotations());
-                // check if we are dealing with a file upload , currently only multipart/form-data and application/octet
-                //in the raml definition for such a function
-                final boolean[] isContentUpload = new boolean[] { false };
-                final int[] uploadParamPosition = new int[] { -1 };
-                params.forEach(param -> {
-                  if (((JsonObject) param.getValue()).getString("type").equals(FILE_UPLOAD_PARAM)) {
-                    isContentUpload[0] = true;
-                    uploadParamPosition[0] = ((JsonObject) param.getValue()).getInteger("order");
-                  }
-                  else if(((JsonObject) param.getValue()).getString("type").equals("java.io.InputStream")){
-                    //application/octet-stream passed - this is handled in a stream like manner
-                    //and the corresponding function called must annotate with a @Stream - and be able
-                    //to handle the function being called repeatedly on parts of the data
-                    uploadParamPosition[0] = ((JsonObject) param.getValue()).getInteger("order");
-                    isContentUpload[0] = true;
-                  }
-                });
+        // the url exists but the http method requested does not match a function
+        // meaning url+http method != a function
+        endRequestWithError(rc, 400, true, messages.getMessage("en", MessageConsts.HTTPMethodNotSupported),
+          validRequest);
+        return;
+      }
+      // the route the request is measured by, see recordMetrics
+      rc.put(METRICS_ROUTE, operation.getRoute());
+      if (StageTimer.sample(timingSample)) {
+        StageTimer timer = new StageTimer(start);
+        timer.mark(Stage.ROUTE);
+        rc.put(STAGE_TIMER, timer);
+      }
+      try {
+        //pathParams are the place holders in the raml query string
+        //for example /admin/{admin_id}/yyy/{yyy_id} - the content in between the {} are path params
+        //they are replaced with actual values and are passed to the function which the url is mapped to
+        String[] pathParams = match.getPathParams();
+
+        //create okapi headers map and inject into function
+        Map<String, String> okapiHeaders = new CaseInsensitiveMap<>();
+        String []tenantId = new String[]{null};
+        getOkapiHeaders(rc, okapiHeaders, tenantId);
+        String reqId = okapiHeaders.get(OKAPI_REQUESTID_HEADER);
+        if(reqId != null){
+          MDC.put("reqId", "reqId="+reqId);
+        }
+        if(tenantId[0] == null && !rc.request().path().startsWith("/admin")){
+          //if tenant id is not passed in and this is not an /admin request, return error
+          endRequestWithError(rc, 400, true, messages.getMessage("en", MessageConsts.UnableToProcessRequest)
+            + " Tenant must be set", validRequest);
+        }
 
-                // file upload requested (multipart/form-data) but the url is not to the /admin/upload
-                // meaning, an implementing module is using its own upload handling, so read the content and
-                // pass to implementing function just like any other call
-                if (isContentUpload[0] && !streamData) {
-
-                  //if file upload - set needed handlers
-                  // looks something like -> multipart/form-data; boundary=----WebKitFormBoundaryzeZR8KqAYJyI2jPL
-                  if (consumes != null && consumes.contains(SUPPORTED_CONTENT_TYPE_FORMDATA)) {
-                    //multipart
-                    handleMultipartUpload(rc, request, uploadParamPosition, paramArray, validRequest);
-                    request.endHandler( a -> {
-                      if (validRequest[0]) {
-                        //if request is valid - invoke it
-                        try {
-                          invoke(method2Run[0], paramArray, instance, rc, tenantId, okapiHeaders, new StreamStatus(), v -> {
-                            LogUtil.formatLogMessage(className, "start", " invoking " + function);
-                            sendResponse(rc, v, start, tenantId[0]);
-                          });
-                        } catch (Exception e1) {
-                          log.error(e1.getMessage(), e1);
-                          rc.response().end();
-                        }
-                      }
+        if (validRequest[0]) {
+          // implementing class and function of the interface mapped to this url, resolved at startup
+          OperationInvoker invoker = operation.getInvoker();
+          // call back the constructor of the class - gives a hook into the class not based on the apis
+          // passing the vertx and tenant in to it. the instance is reused for later requests of the tenant
+          final Object instance = reuseInstances ? instanceCache.get(invoker, vertx, tenantId[0])
+            : invoker.newInstance(vertx, tenantId[0]);
+
+          // function to invoke for the requested url
+          String function = operation.getFunction();
+          // what the api expects to get (content-type)
+          JsonArray consumes = operation.getConsumes();
+
+          HttpServerRequest request = rc.request();
+
+          //check that the accept and content-types passed in the header of the request
+          //are as described in the raml
+          checkAcceptContentType(operation.getProduces(), consumes, rc, validRequest);
+
+          // create the array and then populate it by parsing the url parameters which are needed to invoke the function mapped
+          //to the requested URL - array will be populated by parseParams() function
+          ParamSpec[] params = operation.getParams();
+          Object[] paramArray = new Object[params.length];
+          parseParams(rc, params, validRequest, consumes, paramArray, pathParams, okapiHeaders);
+          mark(rc, Stage.PARAMS);
+
+          //is function annotated to receive data in chunks as they come in.
+          //Note that the function controls the logic to this if this is the case
+          boolean streamData = invoker.isStreamed();
+          // check if we are dealing with a file upload , currently only multipart/form-data and application/octet
+          //in the raml definition for such a function
+          final int[] uploadParamPosition = new int[] { operation.getUploadParamPosition() };
+
+          // file upload requested (multipart/form-data) but the url is not to the /admin/upload
+          // meaning, an implementing module is using its own upload handling, so read the content and
+          // pass to implementing function just like any other call
+          if (operation.isContentUpload() && !streamData) {
+
+            //if file upload - set needed handlers
+            // looks something like -> multipart/form-data; boundary=----WebKitFormBoundaryzeZR8KqAYJyI2jPL
+            if (consumes != null && consumes.contains(SUPPORTED_CONTENT_TYPE_FORMDATA)) {
+              //multipart
+              handleMultipartUpload(rc, request, uploadParamPosition, paramArray, validRequest);
+              request.endHandler( a -> {
+                if (validRequest[0]) {
+                  //if request is valid - invoke it
+                  try {
+                    invoke(invoker, paramArray, instance, rc, tenantId, okapiHeaders, new StreamStatus(), v -> {
+                      LogUtil.formatLogMessage(className, "start", " invoking " + function);
+                      sendResponse(rc, v, start, tenantId[0]);
                     });
-                  }
-
-                  else {
-                    //assume input stream
-                    handleInputStreamUpload(method2Run[0], rc, request, instance, tenantId, okapiHeaders,
-                      uploadParamPosition, paramArray, validRequest, start);
+                  } catch (Exception e1) {
+                    log.error(e1.getMessage(), e1);
+                    rc.response().end();
                   }
                 }
-                else if(streamData){
+              });
+            }
 
-                  handleStream(method2Run[0], rc, request, instance, tenantId, okapiHeaders,
-                    uploadParamPosition, paramArray, validRequest, start);
+            else {
+              //assume input stream
+              handleInputStreamUpload(invoker, rc, request, instance, tenantId, okapiHeaders,
+                uploadParamPosition, paramArray, validRequest, start);
+            }
+          }
+          else if(streamData){
 
-                }
-                else{
-                  if (validRequest[0]) {
-                    //if request is valid - invoke it
-                    try {
-                      invoke(method2Run[0], paramArray, instance, rc,  tenantId, okapiHeaders, new StreamStatus(), v -> {
-                        LogUtil.formatLogMessage(className, "start", " invoking " + function);
-                        sendResponse(rc, v, start, tenantId[0]);
-                      });
-                    } catch (Exception e1) {
-                      log.error(e1.getMessage(), e1);
-                      rc.response().end();
-                    }
-                  }
-                }
+            handleStream(invoker, rc, request, instance, tenantId, okapiHeaders,
+              uploadParamPosition, paramArray, validRequest, start);
+
+          }
+          else{
+            if (validRequest[0]) {
+              if (streamedBodyPaths.contains(request.path())) {
+                // nothing has been read so far - hold the body back until the function sets its handlers
+                request.pause();
               }
-              else{
-                endRequestWithError(rc, 400, true, messages.getMessage("en", MessageConsts.UnableToProcessRequest),
-                  validRequest);
-                return;
+              //if request is valid - invoke it
+              try {
+                invoke(invoker, paramArray, instance, rc,  tenantId, okapiHeaders, new StreamStatus(), v -> {
+                  LogUtil.formatLogMessage(className, "start", " invoking " + function);
+                  sendResponse(rc, v, start, tenantId[0]);
+                });
+              } catch (Exception e1) {
+                log.error(e1.getMessage(), e1);
+                rc.response().end();
               }
             }
-          } catch (Exception e) {
-            log.error(e.getMessage(), e);
-            endRequestWithError(rc, 400, true, messages.getMessage("en", MessageConsts.UnableToProcessRequest) + e.getMessage(),
-              validRequest);
-            return;
           }
         }
-      }
-      if (!validPath) {
-        // invalid path
-        endRequestWithError(rc, 400, true,
-          messages.getMessage("en", MessageConsts.InvalidURLPath, rc.request().path()), validRequest);
+        else{
+          endRequestWithError(rc, 400, true, messages.getMessage("en", MessageConsts.UnableToProcessRequest),
+            validRequest);
+          return;
+        }
+      } catch (Exception e) {
+        log.error(e.getMessage(), e);
+        endRequestWithError(rc, 400, true, messages.getMessage("en", MessageConsts.UnableToProcessRequest) + e.getMessage(),
+          validRequest);
+        return;
       }
     } catch (Exception e) {
       log.error(e.getMessage(), e);
     }
   }
 
-  private void handleStream(Method method2Run, RoutingContext rc, HttpServerRequest request,
+  private void handleStream(OperationInvoker invoker, RoutingContext rc, HttpServerRequest request,
                             Object instance, String[] tenantId, Map<String, String> okapiHeaders,
                             int[] uploadParamPosition, Object[] paramArray, boolean[] validRequest, long start){
     request.handler(new Handler<Buffer>() {
@@ -545,8 +723,8 @@ public class RestVerticle2 extends AbstractVerticle {
           stat.setStatus(0);
           paramArray[uploadParamPosition[0]] =
               new ByteArrayInputStream( buff.getBytes() );
-          invoke(method2Run, paramArray, instance, rc,  tenantId, okapiHeaders, stat, v -> {
-            LogUtil.formatLogMessage(className, "start", " invoking " + method2Run);
+          invoke(invoker, paramArray, instance, rc,  tenantId, okapiHeaders, stat, v -> {
+            LogUtil.formatLogMessage(className, "start", " invoking " + invoker.getMethod());
           });
         } catch (Exception e1) {
           log.error(e1.getMessage(), e1);
@@ -558,8 +736,8 @@ public class RestVerticle2 extends AbstractVerticle {
 
       StreamStatus stat = new StreamStatus();
       stat.setStatus(1);
-      invoke(method2Run, paramArray, instance, rc,  tenantId, okapiHeaders, stat, v -> {
-        LogUtil.formatLogMessage(className, "start", " invoking " + method2Run);
+      invoke(invoker, paramArray, instance, rc,  tenantId, okapiHeaders, stat, v -> {
+        LogUtil.formatLogMessage(className, "start", " invoking " + invoker.getMethod());
         //all data has been stored in memory - not necessarily all processed
         sendResponse(rc, v, start, tenantId[0]);
       });
@@ -572,7 +750,7 @@ public class RestVerticle2 extends AbstractVerticle {
       }});
   }
   /**
-   * @param method2Run
+   * @param invoker
    * @param rc
    * @param request
    * @param okapiHeaders
@@ -583,7 +761,7 @@ public class RestVerticle2 extends AbstractVerticle {
    * @param validRequest
    * @param start
    */
-  private void handleInputStreamUpload(Method method2Run, RoutingContext rc, HttpServerRequest request,
+  private void handleInputStreamUpload(OperationInvoker invoker, RoutingContext rc, HttpServerRequest request,
                                        Object instance, String[] tenantId, Map<String, String> okapiHeaders,
                                        int[] uploadParamPosition, Object[] paramArray, boolean[] validRequest, long start) {
 
@@ -598,8 +776,8 @@ public class RestVerticle2 extends AbstractVerticle {
     request.endHandler( e -> {
       paramArray[uploadParamPosition[0]] = new ByteArrayInputStream(content.getBytes());
       try {
-        invoke(method2Run, paramArray, instance, rc, tenantId, okapiHeaders, new StreamStatus(), v -> {
-          LogUtil.formatLogMessage(className, "start", " invoking " + method2Run);
+        invoke(invoker, paramArray, instance, rc, tenantId, okapiHeaders, new StreamStatus(), v -> {
+          LogUtil.formatLogMessage(className, "start", " invoking " + invoker.getMethod());
           sendResponse(rc, v, start, tenantId[0]);
         });
       } catch (Exception e1) {
@@ -696,19 +874,6 @@ public class RestVerticle2 extends AbstractVerticle {
     }
   }
 
-  /**
-   * @param annotations
-   * @return
-   */
-  private boolean isStreamed(Annotation[] annotations) {
-    for (int i = 0; i < annotations.length; i++) {
-      if(annotations[i].annotationType().equals(Stream.class)){
-        return true;
-      }
-    }
-    return false;
-  }
-
   /**
    * Send the result as response.
    *
@@ -726,15 +891,24 @@ public class RestVerticle2 extends AbstractVerticle {
       endRequestWithError(rc, 500, true, "Server error", new boolean[] { true });
       return;
     }
+    mark(rc, Stage.HANDLER);
     Object entity = null;
+    Buffer body = null;
+    // the body as serialized, before it is compressed
+    String logged = null;
+    boolean streamed = false;
+    // read before the request headers are merged into the response
+    long requestBytes = requestBytes(rc.request());
     try {
       HttpServerResponse response = rc.response();
       int statusCode = result.getStatus();
-      // 204 means no content returned in the response, so passing
-      // a chunked Transfer header is not allowed
-      if (statusCode != 204) {
-        response.setChunked(true);
+      // the client's copy is current - the entity is not written
+      if (statusCode == 200 && isNotModified(rc.request(), result.getHeaderString(ETags.ETAG))) {
+        statusCode = 304;
+        result = Response.notModified().header(ETags.ETAG, result.getHeaderString(ETags.ETAG)).build();
       }
+      // the body is in memory when the response is ended, it goes out with a Content-Length -
+      // only streamed entities are chunked, see streamResponse
 
       response.setStatusCode(statusCode);
 
@@ -749,57 +923,191 @@ public class RestVerticle2 extends AbstractVerticle {
       //sent as part of an upload. passing this back will confuse clients as they
       //will think they are getting back a stream of data which may not be the case
       rc.request().headers().remove("Content-type");
-      //remove transfer-encoding from the request header in case the response has no content
-      //since the request headers are appended to the response headers the transfer-encoding
-      //should not be forwarded in cases of no content
-      if(statusCode == 204){
-        rc.request().headers().remove("transfer-encoding");
-      }
+      //the conditions of the request don't apply to the response
+      rc.request().headers().remove(ETags.IF_MATCH);
+      rc.request().headers().remove(ETags.IF_NONE_MATCH);
+      //remove transfer-encoding and content-length from the request header, they describe the
+      //request body - since the request headers are appended to the response headers they would
+      //contradict the framing of the response
+      rc.request().headers().remove("transfer-encoding");
+      rc.request().headers().remove("Content-Length");
 
       mergeIntoResponseHeadersDistinct(response.headers(), rc.request().headers());
 
       entity = result.getEntity();
 
-      /* entity is of type OutStream - and will be written as a string */
+      /* entity is a stream of items - written as they come, the response is ended once the stream is done */
+      if (entity instanceof Flowable) {
+        streamed = true;
+        timing(rc);
+        streamResponse(rc, (Flowable<?>) entity, start, tenantId, requestBytes);
+        return;
+      }
+      // compact json unless asked for ?pretty=true
+      boolean pretty = Boolean.parseBoolean(rc.request().getParam(PRETTY_PARAM));
+      /* entity is of type OutStream - and will be written as json */
       if (entity instanceof OutStream) {
-        response.write(MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(((OutStream) entity).getData()));
+        body = JsonBodyWriter.write(((OutStream) entity).getData(), pretty);
       }
       /* entity is of type BinaryOutStream - and will be written as a buffer */
       else if(entity instanceof BinaryOutStream){
-        response.write(Buffer.buffer(((BinaryOutStream) entity).getData()));
+        body = Buffer.buffer(((BinaryOutStream) entity).getData());
       }
       /* data is a string so just push it out, no conversion needed */
       else if(entity instanceof String){
-        response.write(Buffer.buffer((String)entity));
+        body = Buffer.buffer((String)entity);
       }
       /* catch all - anything else will be assumed to be a pojo which needs converting to json */
       else if (entity != null) {
-        response.write(MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(entity));
+        body = JsonBodyWriter.write(entity, pretty);
+      }
+      if (body != null && log.isDebugEnabled()) {
+        logged = body.toString(StandardCharsets.UTF_8.name());
+      }
+      if (body != null && compressor != null) {
+        response.headers().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        // small bodies are not worth the cpu, they go out as they are
+        String encoding = compressor.shouldCompress(body) ? encoding(rc, response) : null;
+        if (encoding != null) {
+          body = compressor.compress(body, encoding);
+          response.putHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+        }
       }
     } catch (Exception e) {
       log.error(e.getMessage(), e);
+      body = null;
+      logged = null;
     } finally {
-      rc.response().end();
+      if (!streamed) {
+        mark(rc, Stage.SERIALIZE);
+        timing(rc);
+        // ending with the body sets the Content-Length
+        if (body != null) {
+          rc.response().end(body);
+        } else {
+          rc.response().end();
+        }
+      }
     }
 
     long end = System.nanoTime();
+    recordMetrics(rc, start, end, tenantId, requestBytes);
 
-    StringBuilder sb = new StringBuilder();
-    if (log.isDebugEnabled()) {
-      try {
-        sb.append(MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(entity));
-      } catch (Exception e) {
-        String name = "null";
-        if (entity != null) {
-          name = entity.getClass().getName();
-        }
-        log.error("writeValueAsString(" + name + ")", e);
+    accessLog(rc, (end - start) / 1000, tenantId, logged);
+  }
+
+  private static void accessLog(RoutingContext rc, long micros, String tenantId, String message) {
+    HttpServerRequest request = rc.request();
+    AccessLog.log(request.remoteAddress(), request.method(), request.version(), request.path(), request.query(),
+      rc.response().getStatusCode(), micros, rc.response().bytesWritten(), tenantId, message);
+  }
+
+  private static void mark(RoutingContext rc, Stage stage) {
+    StageTimer timer = rc.get(STAGE_TIMER);
+    if (timer != null) {
+      timer.mark(stage);
+    }
+  }
+
+  /**
+   * Adds the Server-Timing header if enabled and logs the spans of a timed request, before the response is sent.
+   */
+  private void timing(RoutingContext rc) {
+    StageTimer timer = rc.get(STAGE_TIMER);
+    if (timer == null) {
+      return;
+    }
+    // reported once, an error after the response is under way does not add a second header
+    rc.put(STAGE_TIMER, null);
+    if (timingHeader) {
+      rc.response().putHeader(SERVER_TIMING, timer.toServerTiming());
+    }
+    if (timingLog.isInfoEnabled()) {
+      timingLog.info(timer.toSpans(rc.request().getHeader(OKAPI_REQUESTID_HEADER), rc.get(METRICS_ROUTE)).encode());
+    }
+  }
+
+  /**
+   * @return true if the request is a GET or HEAD whose If-None-Match lists the entity tag of the response
+   */
+  private static boolean isNotModified(HttpServerRequest request, String etag) {
+    return (request.method() == HttpMethod.GET || request.method() == HttpMethod.HEAD)
+      && ETags.matches(request.getHeader(ETags.IF_NONE_MATCH), etag);
+  }
+
+  /**
+   * @return the encoding the client accepts the response compressed with, null if it accepts none or the
+   *   function has encoded the entity itself
+   */
+  private static String encoding(RoutingContext rc, HttpServerResponse response) {
+    if (response.headers().contains(HttpHeaders.CONTENT_ENCODING)) {
+      return null;
+    }
+    return ResponseCompressor.encoding(rc.request().getHeader(HttpHeaders.ACCEPT_ENCODING));
+  }
+
+  /**
+   * Writes the items of the stream to the response with backpressure from the response's write queue,
+   * compressed if the client accepts it whatever the size as it is not known up front, logs the request
+   * once the response is ended.
+   */
+  private void streamResponse(RoutingContext rc, Flowable<?> stream, long start, String tenantId, long requestBytes) {
+    ResponseCompressor.Stream compression = null;
+    if (compressor != null) {
+      rc.response().headers().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      String encoding = encoding(rc, rc.response());
+      if (encoding != null) {
+        compression = compressor.stream(encoding);
+        rc.response().putHeader(HttpHeaders.CONTENT_ENCODING, encoding);
       }
     }
+    stream
+      .observeOn(RxHelper.scheduler(vertx.getOrCreateContext()))
+      .subscribe(new ResponseStreamer(rc.response(), compression, err -> {
+        long end = System.nanoTime();
+        recordMetrics(rc, start, end, tenantId, requestBytes);
+        accessLog(rc, (end - start) / 1000, tenantId, err == null ? null : err.getMessage());
+      }));
+  }
 
-    LogUtil.formatStatsLogMessage(rc.request().remoteAddress().toString(), rc.request().method().toString(),
-      rc.request().version().toString(), rc.response().getStatusCode(), (((end - start) / 1000000)), rc.response().bytesWritten(),
-      rc.request().path(), rc.request().query(), rc.response().getStatusMessage(), tenantId, sb.toString());
+  /**
+   * @return the declared length of the request body, 0 if there is none or it is chunked
+   */
+  private static long requestBytes(HttpServerRequest request) {
+    String length = request.getHeader(HttpHeaders.CONTENT_LENGTH);
+    if (length == null) {
+      return 0;
+    }
+    try {
+      return Long.parseLong(length);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private static void recordMetrics(RoutingContext rc, long start, long end, String tenantId, long requestBytes) {
+    String route = rc.get(METRICS_ROUTE);
+    if (route != null) {
+      RequestMetrics.record(tenantId, route, rc.request().method(), rc.response().getStatusCode(),
+        (end - start) / 1000, requestBytes, rc.response().bytesWritten());
+    }
+  }
+
+  /**
+   * prometheus text exposition of the request metrics, the event loop health, the caches and the db pools
+   */
+  private void metrics(RoutingContext rc) {
+    StringBuilder sb = new StringBuilder(16 * 1024);
+    RequestMetrics.writePrometheus(sb);
+    LoopMonitor.writePrometheus(sb);
+    BodyValidator.writePrometheus(sb);
+    EntityCache.writePrometheus(sb);
+    PgQuery.writePrometheus(sb);
+    org.folio.rest.utils.PostgresClient.writePrometheus(sb);
+    AccessLog.writePrometheus(sb);
+    rc.response()
+      .putHeader(HttpHeaders.CONTENT_TYPE, PROMETHEUS_CONTENT_TYPE)
+      .end(sb.toString());
   }
 
   /**
@@ -831,6 +1139,7 @@ public class RestVerticle2 extends AbstractVerticle {
     if (isValid[0]) {
       rc.response().setChunked(chunked);
       rc.response().setStatusCode(status);
+      timing(rc);
       if(status == 422){
         rc.response().putHeader("Content-type", SUPPORTED_CONTENT_TYPE_JSON_DEF);
       }
@@ -841,9 +1150,16 @@ public class RestVerticle2 extends AbstractVerticle {
         message = "";
       }
       rc.response().end();
-      LogUtil.formatStatsLogMessage(rc.request().remoteAddress().toString(), rc.request().method().toString(),
-        rc.request().version().toString(), rc.response().getStatusCode(), -1, rc.response().bytesWritten(),
-        rc.request().path(), rc.request().query(), rc.response().getStatusMessage(), null, message);
+      Long start = rc.get(METRICS_START);
+      if (start != null) {
+        // rejected before the path or the method matched a function
+        if (rc.get(METRICS_ROUTE) == null) {
+          rc.put(METRICS_ROUTE, METRICS_UNMATCHED_ROUTE);
+        }
+        recordMetrics(rc, start, System.nanoTime(), rc.request().getHeader(ClientGenerator.OKAPI_HEADER_TENANT),
+          requestBytes(rc.request()));
+      }
+      accessLog(rc, -1, null, message);
     }
     // once we are here the call is not valid
     isValid[0] = false;
@@ -859,24 +1175,19 @@ public class RestVerticle2 extends AbstractVerticle {
         }
         headers.put(headerKey, entry.getValue());
       }
+      //conditional request headers, the implementations check them against the version of the resource
+      else if(headerKey.equalsIgnoreCase(ETags.IF_MATCH) || headerKey.equalsIgnoreCase(ETags.IF_NONE_MATCH)){
+        headers.put(headerKey, entry.getValue());
+      }
     };
     mm.forEach(consumer);
   }
 
-  public void invoke(Method method, Object[] params, Object o, RoutingContext rc, String[] tenantId,
+  public void invoke(OperationInvoker method, Object[] params, Object o, RoutingContext rc, String[] tenantId,
                      Map<String,String> headers, StreamStatus streamed, Handler<AsyncResult<Response>> resultHandler) {
     SingleObserver<Response> responseSingleObserver = SingleHelper.toObserver(resultHandler);
 
-    String generateRCforFunc = PomReader.INSTANCE.getProps().getProperty("generate_routing_context");
-    boolean addRCParam = false;
-    if(generateRCforFunc != null){
-      String []addRC = generateRCforFunc.split(",");
-      for (int i = 0; i < addRC.length; i++) {
-        if(addRC[i].equals(rc.request().path())){
-          addRCParam = true;
-        }
-      }
-    }
+    boolean addRCParam = routingContextPaths.contains(rc.request().path());
 
     Context context = vertx.getOrCreateContext();
 
@@ -920,26 +1231,39 @@ public class RestVerticle2 extends AbstractVerticle {
     newArray[params.length - (size-pos)] = headers;
 
     context.runOnContext(v -> {
+      long invoked = System.nanoTime();
       try {
         method.invoke(o, newArray);
-        // response.setChunked(true);
-        // response.setStatusCode(((Response)result).getStatus());
-      } catch (Exception e) {
+      } catch (Throwable e) {
         log.error(e.getMessage(), e);
-        String message;
-        try {
-          // catch exception for now in case of null point and show generic
-          // message
-          message = e.getCause().getMessage();
-        } catch (Throwable ee) {
+        // the invoker does not wrap what the function throws, show a generic
+        // message if there is nothing to report
+        String message = e.getMessage();
+        if (message == null) {
           message = messages.getMessage("en", MessageConsts.UnableToProcessRequest);
         }
         endRequestWithError(rc, 400, true, message, new boolean[] { true });
+      } finally {
+        // the time the function held the loop, not the time until it responds - by the route it serves
+        if (loopMonitor != null) {
+          String route = rc.get(METRICS_ROUTE);
+          loopMonitor.record(route == null ? METRICS_UNMATCHED_ROUTE : route, rc.request().method(),
+            System.nanoTime() - invoked);
+        }
       }
 
     });
   }
 
+  private static Set<String> loadPomPaths(String property) {
+    Set<String> paths = new HashSet<>();
+    String value = PomReader.INSTANCE.getProps().getProperty(property);
+    if(value != null){
+      paths.addAll(Arrays.asList(value.split(",")));
+    }
+    return paths;
+  }
+
   public JsonObject loadConfig(String configFile) {
     try {
       byte[] jsonData = ByteStreams.toByteArray(getClass().getClassLoader().getResourceAsStream(configFile));
@@ -950,7 +1274,7 @@ public class RestVerticle2 extends AbstractVerticle {
     return new JsonObject();
   }
 
-  private MappedClasses populateConfig() {
+  private static MappedClasses populateConfig() {
     MappedClasses mappedURLs = new MappedClasses();
     JsonObject jObjClasses = new JsonObject();
     try {
@@ -983,9 +1307,18 @@ public class RestVerticle2 extends AbstractVerticle {
   @Override
   public void stop(Future<Void> stopFuture) throws Exception {
     super.stop();
+    instanceCache.clear();
+    if (loopMonitor != null) {
+      loopMonitor.stop();
+    }
     try {
       droolsSession.dispose();
     } catch (Exception e) {/*ignore*/}
+    if (secondary) {
+      stopFuture.complete();
+      return;
+    }
+    AccessLog.stop();
     // removes the .lck file associated with the log file
     LogUtil.closeLogger();
     runShutdownHook(v -> {
@@ -1107,6 +1440,14 @@ public class RestVerticle2 extends AbstractVerticle {
           port = Integer.parseInt(param.split("=")[1]);
           LogUtil.formatLogMessage(className, "cmdProcessing", "port to listen on " + port);
         }
+        else if (param.startsWith(HTTP_SERVER + ".")) {
+          String[] arg = param.substring(HTTP_SERVER.length() + 1).split("=", 2);
+          if (arg.length == 2) {
+            putServerOption(cmdServerOptions, arg[0], arg[1]);
+            LogUtil.formatLogMessage(className, "cmdProcessing", "http server option " + arg[0] + " set to "
+              + (isSecretOption(arg[0]) ? "***" : arg[1]));
+          }
+        }
         else if (param.startsWith("drools_dir=")) {
           droolsPath = param.split("=")[1];
           LogUtil.formatLogMessage(className, "cmdProcessing", "Drools rules file dir set to " + droolsPath);
@@ -1156,11 +1497,12 @@ public class RestVerticle2 extends AbstractVerticle {
         }
       }
 
-      if (PostgresClient.isEmbedded() || importDataPath != null) {
+      // once, by the first instance
+      if (!secondary && (PostgresClient.isEmbedded() || importDataPath != null)) {
         PostgresClient.getInstance(vertx).startEmbeddedPostgres();
       }
 
-      if (importDataPath != null) {
+      if (!secondary && importDataPath != null) {
         // blocks as well for now
         System.out.println("Import DB file....  " + importDataPath);
         PostgresClient.getInstance(vertx).importFileEmbedded(importDataPath);
@@ -1174,6 +1516,66 @@ public class RestVerticle2 extends AbstractVerticle {
     }
   }
 
+  /**
+   * Puts a command line server option by its dotted name - command line values are strings, they are
+   * converted to the type of the option's setter so a numeric password stays a string.
+   */
+  private static void putServerOption(JsonObject options, String name, String value) {
+    String[] path = name.split("\\.");
+    Class<?> type = HttpServerOptions.class;
+    JsonObject json = options;
+    for (int i = 0; i < path.length - 1; i++) {
+      type = optionType(type, path[i]);
+      JsonObject nested = json.getJsonObject(path[i]);
+      if (nested == null) {
+        nested = new JsonObject();
+        json.put(path[i], nested);
+      }
+      json = nested;
+    }
+    json.put(path[path.length - 1], jsonValue(optionType(type, path[path.length - 1]), value));
+  }
+
+  /**
+   * @return the parameter type of the setter of the option, null if the options class has none
+   */
+  private static Class<?> optionType(Class<?> optionsClass, String name) {
+    if (optionsClass == null || name.isEmpty()) {
+      return null;
+    }
+    String setter = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    for (Method method : optionsClass.getMethods()) {
+      if (method.getName().equals(setter) && method.getParameterCount() == 1) {
+        return method.getParameterTypes()[0];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the value as the json type of the option, as is if the type is not a number or a boolean - a
+   *   malformed number is left to the options' json constructor to report
+   */
+  private static Object jsonValue(Class<?> type, String value) {
+    try {
+      if (type == boolean.class || type == Boolean.class) {
+        return Boolean.valueOf(value);
+      }
+      if (type == int.class || type == Integer.class) {
+        return Integer.valueOf(value);
+      }
+      if (type == long.class || type == Long.class) {
+        return Long.valueOf(value);
+      }
+      if (type == double.class || type == Double.class || type == float.class || type == Float.class) {
+        return Double.valueOf(value);
+      }
+    } catch (NumberFormatException e) {
+      // falls through
+    }
+    return value;
+  }
+
   /**
    * look for the boundary and return just the multipart/form-data multipart/form-data boundary=----WebKitFormBoundaryP8wZiNAoFszXOXEt if
    * boundary doesnt exist that return original string
@@ -1220,135 +1622,142 @@ public class RestVerticle2 extends AbstractVerticle {
     }
   }
 
-  private void parseParams(RoutingContext rc, Iterator<Entry<String, Object>> paramList, boolean[] validRequest, JsonArray consumes,
+  private void parseParams(RoutingContext rc, ParamSpec[] params, boolean[] validRequest, JsonArray consumes,
                            Object[] paramArray, String[] pathParams, Map<String, String> okapiHeaders) {
 
     HttpServerRequest request = rc.request();
     MultiMap queryParams = request.params();
     int []pathParamsIndex = new int[] { pathParams.length };
 
-    paramList.forEachRemaining(entry -> {
+    for (ParamSpec spec : params) {
       if (validRequest[0]) {
-        String valueName = ((JsonObject) entry.getValue()).getString("value");
-        String valueType = ((JsonObject) entry.getValue()).getString("type");
-        String paramType = ((JsonObject) entry.getValue()).getString("param_type");
-        int order = ((JsonObject) entry.getValue()).getInteger("order");
-        Object defaultVal = ((JsonObject) entry.getValue()).getValue("default_value");
+        String valueName = spec.getName();
+        String valueType = spec.getType();
+        int order = spec.getOrder();
+        Object defaultVal = spec.getDefaultValue();
 
         boolean emptyNumeircParam = false;
         // validation of query params (other then enums), object in body (not including drools),
         // and some header params validated by jsr311 (aspects) - the rest are handled in the code here
         // handle un-annotated parameters - this is assumed to be
-        // entities in HTTP BODY for post and put requests or the 3 injected params
-        // (okapi headers, vertx context and vertx handler) - file uploads are also not annotated but are not handled here due
-        // to their async upload - so explicitly skip them
-        if (AnnotationGrabber.NON_ANNOTATED_PARAM.equals(paramType) && !FILE_UPLOAD_PARAM.equals(valueType)) {
+        // entities in HTTP BODY for post and put requests - the injected params
+        // (okapi headers, vertx context and vertx handler) and file uploads are also not annotated
+        // but are not handled here, file uploads due to their async upload
+        if (spec.getKind() == ParamSpec.Kind.BODY) {
           try {
             // this will also validate the json against the pojo created from the schema
-            Class<?> entityClazz = Class.forName(valueType);
-
-            if (!valueType.equals("io.vertx.core.Handler") && !valueType.equals("io.reactivex.SingleObserver") && !valueType.equals("io.vertx.core.Context") &&
-                !valueType.equals("java.util.Map") && !valueType.equals("java.io.InputStream") && !valueType.equals("io.vertx.ext.web.RoutingContext")) {
-              // we have special handling for the Result Handler and context, it is also assumed that
-              //an inputsteam parameter occurs when application/octet is declared in the raml
-              //in which case the content will be streamed to he function
-              String bodyContent = rc.getBodyAsString();
-              log.debug(rc.request().path() + " -------- bodyContent -------- " + bodyContent);
-              if(bodyContent != null){
-                if("java.io.Reader".equals(valueType)){
-                  paramArray[order] = new StringReader(bodyContent);
-                }
-                else if(bodyContent.length() > 0) {
-                  try {
-                    paramArray[order] = MAPPER.readValue(bodyContent, entityClazz);
-                  } catch (UnrecognizedPropertyException e) {
-                    log.error(e.getMessage(), e);
-                    endRequestWithError(rc, RTFConsts.VALIDATION_ERROR_HTTP_CODE, true, JsonUtils.entity2String(
-                      ValidationHelper.createValidationErrorMessage("", "", e.getMessage())) , validRequest);
-                    return;
-                  }
+            Class<?> entityClazz = spec.getEntityClass() != null ? spec.getEntityClass() : Class.forName(valueType);
+
+            // the entity is bound from the bytes, the body is only decoded to a String for a Reader or the debug log
+            Buffer body = rc.getBody();
+            if (log.isDebugEnabled()) {
+              log.debug(rc.request().path() + " -------- bodyContent -------- "
+                + (body == null ? null : body.toString(StandardCharsets.UTF_8.name())));
+            }
+            if(body != null){
+              if("java.io.Reader".equals(valueType)){
+                paramArray[order] = new StringReader(body.toString(StandardCharsets.UTF_8.name()));
+              }
+              else if(body.length() > 0) {
+                try {
+                  // read-only properties are skipped while reading, see BodyValidator
+                  paramArray[order] = BodyValidator.forClass(entityClazz).read(body);
+                } catch (UnrecognizedPropertyException e) {
+                  log.error(e.getMessage(), e);
+                  endRequestWithError(rc, RTFConsts.VALIDATION_ERROR_HTTP_CODE, true, JsonUtils.entity2String(
+                    ValidationHelper.createValidationErrorMessage("", "", e.getMessage())) , validRequest);
+                  continue;
                 }
               }
+            }
 
-              Errors errorResp = new Errors();
+            Errors errorResp = new Errors();
 
-              if(!allowEmptyObject(entityClazz, bodyContent)){
-                //right now - because no way in raml to make body optional - do not validate
-                //TenantAttributes object as it may be empty
+            if(!allowEmptyObject(entityClazz, body)){
+              //right now - because no way in raml to make body optional - do not validate
+              //TenantAttributes object as it may be empty
 
-                //is this request only to validate a field value and not an actual
-                //request for additional processing
-                List<String> field2validate = request.params().getAll("validate_field");
-                Object[] resp = isValidRequest(rc, paramArray[order], errorResp, validRequest, field2validate, entityClazz);
-                boolean isValid = (boolean)resp[0];
-                paramArray[order] = resp[1];
+              //is this request only to validate a field value and not an actual
+              //request for additional processing
+              List<String> field2validate = request.params().getAll("validate_field");
+              mark(rc, Stage.PARAMS);
+              Object[] resp = isValidRequest(rc, paramArray[order], errorResp, validRequest, field2validate, entityClazz);
+              boolean isValid = (boolean)resp[0];
+              paramArray[order] = resp[1];
 
-                if(!isValid){
-                  endRequestWithError(rc, RTFConsts.VALIDATION_ERROR_HTTP_CODE, true, JsonUtils.entity2String(errorResp) , validRequest);
-                  return;
-                }
-                else if(isValid && !field2validate.isEmpty()){
-                  //valid request for the field to validate request made
-                    AsyncResponseResult arr = new AsyncResponseResult();
-                    ResponseImpl ri = new ResponseImpl();
-                    ri.setStatus(200);
-                    arr.setResult(ri);
-                    //right now this is the only flag available to stop
-                    //any additional respones for this request. to fix
-                    validRequest[0] = false;
-                    sendResponse(rc, arr, 0, null);
-                    return;
-                }
+              if(!isValid){
+                endRequestWithError(rc, RTFConsts.VALIDATION_ERROR_HTTP_CODE, true, JsonUtils.entity2String(errorResp) , validRequest);
+                continue;
               }
-              // complex rules validation here (drools) - after simpler validation rules pass -
-              Error error = new Error();
-              FactHandle handle = null;
-              FactHandle handleError = null;
-              try {
-                // if no /rules exist then drools session will be null
-                if (droolsSession != null && paramArray[order] != null && validRequest[0]) {
-                  // add object to validate to session
-                  handle = droolsSession.insert(paramArray[order]);
-                  handleError = droolsSession.insert(error);
-                  // run all rules in session on object
-                  droolsSession.fireAllRules();
-                }
-              } catch (Exception e) {
-                error.setCode("-1");
-                error.setType(RTFConsts.VALIDATION_FIELD_ERROR);
-                errorResp.getErrors().add(error);
-                endRequestWithError(rc, RTFConsts.VALIDATION_ERROR_HTTP_CODE, true, JsonUtils.entity2String(errorResp), validRequest);
+              else if(isValid && !field2validate.isEmpty()){
+                //valid request for the field to validate request made
+                  AsyncResponseResult arr = new AsyncResponseResult();
+                  ResponseImpl ri = new ResponseImpl();
+                  ri.setStatus(200);
+                  arr.setResult(ri);
+                  //right now this is the only flag available to stop
+                  //any additional respones for this request. to fix
+                  validRequest[0] = false;
+                  sendResponse(rc, arr, 0, null);
+                  continue;
               }
-              finally {
-                // remove the object from the session
-                if(handle != null){
-                  droolsSession.delete(handle);
-                  droolsSession.delete(handleError);
+            }
+            // complex rules validation here (drools) - after simpler validation rules pass -
+            Error error = new Error();
+            // if no /rules exist then drools session will be null
+            KieSession session = droolsSessionOverride != null ? droolsSessionOverride : droolsSession;
+            // uncontended unless the session is the shared override
+            if (session != null) {
+              synchronized (session) {
+                FactHandle handle = null;
+                FactHandle handleError = null;
+                try {
+                  if (paramArray[order] != null && validRequest[0]) {
+                    // add object to validate to session
+                    handle = session.insert(paramArray[order]);
+                    handleError = session.insert(error);
+                    // run all rules in session on object
+                    session.fireAllRules();
+                  }
+                } catch (Exception e) {
+                  error.setCode("-1");
+                  error.setType(RTFConsts.VALIDATION_FIELD_ERROR);
+                  errorResp.getErrors().add(error);
+                  endRequestWithError(rc, RTFConsts.VALIDATION_ERROR_HTTP_CODE, true, JsonUtils.entity2String(errorResp), validRequest);
+                }
+                finally {
+                  // remove the object from the session
+                  if(handle != null){
+                    session.delete(handle);
+                    session.delete(handleError);
+                  }
                 }
               }
-              populateMetaData(paramArray[order], okapiHeaders, rc.request().path());
             }
+            mark(rc, Stage.VALIDATE);
+            populateMetaData(paramArray[order], okapiHeaders, rc.request().path());
           } catch (Exception e) {
             log.error(e.getMessage(), e);
             endRequestWithError(rc, 400, true, "Json content error " + e.getMessage(), validRequest);
 
           }
-        } else if (AnnotationGrabber.HEADER_PARAM.equals(paramType)) {
+        } else if (spec.getKind() == ParamSpec.Kind.HEADER) {
           // handle header params - read the header field from the
           // header (valueName) and get its value
           String value = request.getHeader(valueName);
           // set the value passed from the header as a param to the function
           paramArray[order] = value;
-        } else if (AnnotationGrabber.PATH_PARAM.equals(paramType)) {
+        } else if (spec.getKind() == ParamSpec.Kind.PATH) {
           // these are placeholder values in the path - for example
           // /patrons/{patronid} - this would be the patronid value
           paramArray[order] = pathParams[pathParamsIndex[0] - 1];
           pathParamsIndex[0] = pathParamsIndex[0] - 1;
-        } else if (AnnotationGrabber.QUERY_PARAM.equals(paramType)) {
+        } else if (spec.getKind() == ParamSpec.Kind.QUERY) {
           String param = queryParams.get(valueName);
           // support enum, numbers or strings as query parameters
           try {
-            if (valueType.contains("String")) {
+            ParamSpec.QueryType queryType = spec.getQueryType();
+            if (queryType == ParamSpec.QueryType.STRING) {
               // regular string param in query string - just push value
               if (param == null && defaultVal != null) {
                 // no value passed - check if there is a default value
@@ -1356,7 +1765,7 @@ public class RestVerticle2 extends AbstractVerticle {
               } else {
                 paramArray[order] = param;
               }
-            } else if (valueType.contains("int") || valueType.contains("Integer")) {
+            } else if (queryType == ParamSpec.QueryType.INT) {
               // cant pass null to an int type
               if (param == null) {
                 if (defaultVal != null) {
@@ -1371,7 +1780,7 @@ public class RestVerticle2 extends AbstractVerticle {
               else {
                 paramArray[order] = Integer.valueOf(param);
               }
-            } else if (valueType.contains("boolean") || valueType.contains("Boolean")) {
+            } else if (queryType == ParamSpec.QueryType.BOOLEAN) {
               if (param == null) {
                 if (defaultVal != null) {
                   paramArray[order] = Boolean.valueOf((String)defaultVal);
@@ -1379,7 +1788,7 @@ public class RestVerticle2 extends AbstractVerticle {
               } else {
                 paramArray[order] = Boolean.valueOf(param);
               }
-            } else if (valueType.contains("List")) {
+            } else if (queryType == ParamSpec.QueryType.LIST) {
               List<String> vals = queryParams.getAll(valueName);
               if (vals == null) {
                 paramArray[order] = null;
@@ -1387,7 +1796,7 @@ public class RestVerticle2 extends AbstractVerticle {
               else {
                 paramArray[order] = vals;
               }
-            } else if (valueType.contains("BigDecimal") || valueType.contains("Number")) {
+            } else if (queryType == ParamSpec.QueryType.DECIMAL) {
               if (param == null) {
                 if (defaultVal != null) {
                   paramArray[order] = new BigDecimal((String) defaultVal);
@@ -1403,10 +1812,12 @@ public class RestVerticle2 extends AbstractVerticle {
               }
             } else { // enum object type
               try {
-                Class<?> enumClazz1 = Class.forName(valueType);
-                if (enumClazz1.isEnum()) {
+                Object[] vals = spec.getEnumConstants();
+                if (vals == null && Class.forName(valueType).isEnum()) {
+                  vals = Class.forName(valueType).getEnumConstants();
+                }
+                if (vals != null) {
                   Object defaultEnum = null;
-                  Object[] vals = enumClazz1.getEnumConstants();
                   for (int i = 0; i < vals.length; i++) {
                     if (vals[i].toString().equals(defaultVal)) {
                       defaultEnum = vals[i];
@@ -1443,7 +1854,7 @@ public class RestVerticle2 extends AbstractVerticle {
           }
         }
       }
-    });
+    }
   }
 
   /**
@@ -1457,29 +1868,14 @@ public class RestVerticle2 extends AbstractVerticle {
    *
    */
   private Object[] isValidRequest(RoutingContext rc, Object content, Errors errorResp, boolean[] validRequest, List<String> singleField, Class<?> entityClazz) {
-    Set<? extends ConstraintViolation<?>> validationErrors = validationFactory.getValidator().validate(content);
+    // the validator and constraints of the class are cached, read-only properties have been skipped when reading
+    Set<? extends ConstraintViolation<?>> validationErrors = BodyValidator.forClass(entityClazz).validate(content);
     boolean ret = true;
     if (validationErrors.size() > 0) {
       //StringBuffer sb = new StringBuffer();
 
       for (ConstraintViolation<?> cv : validationErrors) {
 
-        if("must be null".equals(cv.getMessage())){
-          /**
-           * read only fields are marked with a 'must be null' annotation @null
-           * so the client should not pass them in, if they were passed in, remove them here
-           * so that they do not reach the implementing function
-           */
-          try {
-            if(!(content instanceof JsonObject)){
-              content = JsonObject.mapFrom(content);
-            }
-            ((JsonObject)content).remove(cv.getPropertyPath().toString());
-            continue;
-          } catch (Exception e) {
-            log.warn("Failed to remove " + cv.getPropertyPath().toString() + " field from body when calling " + rc.request().absoluteURI(), e);
-          }
-        }
         Error error = new Error();
         Parameter p = new Parameter();
         String field = cv.getPropertyPath().toString();
@@ -1506,14 +1902,6 @@ public class RestVerticle2 extends AbstractVerticle {
         }
         //sb.append("\n" + cv.getPropertyPath() + "  " + cv.getMessage() + ",");
       }
-      if(content instanceof JsonObject){
-        //we have sanitized the passed in object by removing read-only fields
-        try {
-          content = MAPPER.readValue(((JsonObject)content).encode(), entityClazz);
-        } catch (IOException e) {
-          log.error("Failed to serialize body content after removing read-only fields when calling " + rc.request().absoluteURI(), e);
-        }
-      }
     }
 
     return new Object[]{Boolean.valueOf(ret), content};
@@ -1560,11 +1948,11 @@ public class RestVerticle2 extends AbstractVerticle {
     }
   }
 
-  private boolean allowEmptyObject(Class clazz, String bodyContent){
+  private boolean allowEmptyObject(Class clazz, Buffer body){
     if(clazz.getName().equals(TenantAttributes.class.getName())){
       //right now - because no way in raml to make body optional - do not validate
       //TenantAttributes object if it is empty - since this is allowed
-      if(bodyContent == null || bodyContent.length() == 0){
+      if(body == null || body.length() == 0){
         return true;
       }
     }
@@ -1575,6 +1963,20 @@ public class RestVerticle2 extends AbstractVerticle {
     return serverMetrics;
   }
 
+  /**
+   * @return event loop lag by loop, time spent on the loop and blocked incidents by function
+   */
+  public static JsonObject getLoopMetrics(){
+    return LoopMonitor.getAllStats();
+  }
+
+  /**
+   * @return validations, failures and time spent validating request bodies by entity class
+   */
+  public static JsonObject getValidationMetrics(){
+    return BodyValidator.getAllStats();
+  }
+
   class StreamStatus {
 
     private int status = -1;
@@ -1587,8 +1989,11 @@ public class RestVerticle2 extends AbstractVerticle {
     }
   }
 
+  /**
+   * the session replaces the ones of all instances, its use is synchronized as it is shared
+   */
   public static void updateDroolsSession(KieSession s) {
-    droolsSession = s;
+    droolsSessionOverride = s;
   }
 
   public static String getDeploymentId(){
@@ -0,0 +1,275 @@
+package org.folio.rest.routing;
+
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.net.SocketAddress;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Access log written off the event loops.
+ *
+ * A request is logged by copying references to what the request already holds - address, method, path,
+ * status and so on - into a preallocated slot of a bounded ring buffer, nothing is formatted on the event
+ * loop. A background thread drains the ring in batches, formats the lines and writes each batch with one
+ * write to the log file, or to the logger if there is no file. If the ring is full the record is dropped
+ * and counted, the event loop never waits for the writer.
+ *
+ * Successful requests may be sampled, responses with a status of 500 and above are always logged.
+ * The ring is the bounded multi producer queue of D. Vyukov - a slot is claimed by a cas on the tail and
+ * published by its sequence number.
+ */
+public final class AccessLog {
+
+  public static final int DEFAULT_CAPACITY = 8192;
+  public static final int DEFAULT_BATCH_SIZE = 256;
+
+  private static final Logger log = LoggerFactory.getLogger(AccessLog.class);
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private static volatile AccessLog instance;
+
+  private final Entry[] entries;
+  private final AtomicLongArray sequences;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong written = new AtomicLong();
+  private final double sampleRate;
+  private final int batchSize;
+  private final String file;
+  private final Thread writer;
+  private long head;
+  private volatile boolean running = true;
+
+  private AccessLog(int capacity, int batchSize, double sampleRate, String file) {
+    int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    this.entries = new Entry[size];
+    this.sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      entries[i] = new Entry();
+      sequences.set(i, i);
+    }
+    this.mask = size - 1;
+    this.batchSize = batchSize;
+    this.sampleRate = sampleRate;
+    this.file = file;
+    this.writer = new Thread(this::drain, "access-log-writer");
+    this.writer.setDaemon(true);
+  }
+
+  /**
+   * Starts the access log of the process, a no-op if it runs already.
+   *
+   * @param sampleRate  share of the requests below status 500 to log, from 0 to 1
+   * @param file  file the lines are appended to, null for the logger
+   */
+  public static synchronized void start(int capacity, int batchSize, double sampleRate, String file) {
+    if (instance == null) {
+      AccessLog accessLog = new AccessLog(capacity, batchSize, sampleRate, file);
+      accessLog.writer.start();
+      instance = accessLog;
+    }
+  }
+
+  /**
+   * Stops the writer once it has written what has been logged so far.
+   */
+  public static synchronized void stop() {
+    AccessLog accessLog = instance;
+    instance = null;
+    if (accessLog != null) {
+      accessLog.running = false;
+      LockSupport.unpark(accessLog.writer);
+    }
+  }
+
+  /**
+   * Logs a request, without blocking - with the writer not running the request is not logged.
+   *
+   * @param micros  latency, negative if unknown
+   * @param message  appended to the line, may be null
+   */
+  public static void log(SocketAddress remote, HttpMethod method, HttpVersion version, String path, String query,
+                         int status, long micros, long bytes, String tenant, String message) {
+    AccessLog accessLog = instance;
+    if (accessLog == null) {
+      return;
+    }
+    if (status < 500 && accessLog.sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= accessLog.sampleRate) {
+      return;
+    }
+    accessLog.offer(remote, method, version, path, query, status, micros, bytes, tenant, message);
+  }
+
+  private void offer(SocketAddress remote, HttpMethod method, HttpVersion version, String path, String query,
+                     int status, long micros, long bytes, String tenant, String message) {
+    long pos = tail.get();
+    while (true) {
+      int slot = (int) (pos & mask);
+      long diff = sequences.get(slot) - pos;
+      if (diff == 0) {
+        if (tail.compareAndSet(pos, pos + 1)) {
+          break;
+        }
+        pos = tail.get();
+      } else if (diff < 0) {
+        // the writer has not freed the slot yet
+        dropped.incrementAndGet();
+        return;
+      } else {
+        pos = tail.get();
+      }
+    }
+    int slot = (int) (pos & mask);
+    Entry entry = entries[slot];
+    entry.time = System.currentTimeMillis();
+    entry.remote = remote;
+    entry.method = method;
+    entry.version = version;
+    entry.path = path;
+    entry.query = query;
+    entry.status = status;
+    entry.micros = micros;
+    entry.bytes = bytes;
+    entry.tenant = tenant;
+    entry.message = message;
+    sequences.lazySet(slot, pos + 1);
+  }
+
+  private void drain() {
+    StringBuilder sb = new StringBuilder(64 * 1024);
+    try (Writer out = file == null ? null
+      : new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8), 64 * 1024)) {
+      while (true) {
+        int count = 0;
+        while (count < batchSize) {
+          int slot = (int) (head & mask);
+          if (sequences.get(slot) != head + 1) {
+            break;
+          }
+          Entry entry = entries[slot];
+          format(sb, entry);
+          entry.clear();
+          sequences.lazySet(slot, head + entries.length);
+          head++;
+          count++;
+        }
+        if (count > 0) {
+          write(out, sb);
+          written.addAndGet(count);
+          sb.setLength(0);
+        } else if (!running) {
+          return;
+        } else {
+          LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+      }
+    } catch (IOException e) {
+      log.error("access log writer stopped: " + e.getMessage(), e);
+    }
+  }
+
+  private static void write(Writer out, StringBuilder sb) throws IOException {
+    if (out == null) {
+      // the lines of the batch as one log record
+      sb.setLength(sb.length() - 1);
+      log.info(sb);
+    } else {
+      out.append(sb);
+      out.flush();
+    }
+  }
+
+  private static void format(StringBuilder sb, Entry entry) {
+    sb.append(Instant.ofEpochMilli(entry.time)).append(' ')
+      .append(entry.remote == null ? "-" : entry.remote.host()).append(' ')
+      .append(entry.method).append(' ')
+      .append(entry.version).append(' ')
+      .append(entry.path);
+    if (entry.query != null) {
+      sb.append('?').append(entry.query);
+    }
+    sb.append(' ').append(entry.status).append(' ');
+    if (entry.micros < 0) {
+      sb.append('-');
+    } else {
+      sb.append(entry.micros / 1000).append('.');
+      long fraction = entry.micros % 1000;
+      sb.append(fraction < 10 ? "00" : fraction < 100 ? "0" : "").append(fraction);
+    }
+    sb.append("ms ").append(entry.bytes)
+      .append(" tenant=").append(entry.tenant == null ? "-" : entry.tenant);
+    if (entry.message != null && !entry.message.isEmpty()) {
+      sb.append(' ').append(entry.message);
+    }
+    sb.append('\n');
+  }
+
+  /**
+   * @return records written and dropped since the start, null if the access log does not run
+   */
+  public static JsonObject getStats() {
+    AccessLog accessLog = instance;
+    if (accessLog == null) {
+      return null;
+    }
+    return new JsonObject()
+      .put("written", accessLog.written.get())
+      .put("dropped", accessLog.dropped.get())
+      .put("capacity", accessLog.entries.length)
+      .put("sampleRate", accessLog.sampleRate);
+  }
+
+  /**
+   * prometheus counters of the records written and dropped, nothing if the access log does not run
+   */
+  public static void writePrometheus(StringBuilder sb) {
+    AccessLog accessLog = instance;
+    if (accessLog == null) {
+      return;
+    }
+    sb.append("# HELP access_log_records_written_total Access log records written\n")
+      .append("# TYPE access_log_records_written_total counter\n")
+      .append("access_log_records_written_total ").append(accessLog.written.get()).append('\n')
+      .append("# HELP access_log_records_dropped_total Access log records dropped as the buffer was full\n")
+      .append("# TYPE access_log_records_dropped_total counter\n")
+      .append("access_log_records_dropped_total ").append(accessLog.dropped.get()).append('\n');
+  }
+
+  private static final class Entry {
+    private long time;
+    private SocketAddress remote;
+    private HttpMethod method;
+    private HttpVersion version;
+    private String path;
+    private String query;
+    private int status;
+    private long micros;
+    private long bytes;
+    private String tenant;
+    private String message;
+
+    private void clear() {
+      remote = null;
+      path = null;
+      query = null;
+      tenant = null;
+      message = null;
+    }
+  }
+}
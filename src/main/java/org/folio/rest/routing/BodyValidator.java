@@ -0,0 +1,189 @@
+package org.folio.rest.routing;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerBuilder;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.folio.rest.tools.utils.ObjectMapperTool;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.constraints.Null;
+import javax.validation.metadata.BeanDescriptor;
+import javax.validation.metadata.PropertyDescriptor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reads and validates request bodies, with what depends on the entity class worked out once per class.
+ *
+ * Read-only properties - those annotated {@link Null}, the schema's "readonly" - are skipped by the reader
+ * instead of being read and removed afterwards, whatever the client sends for them never reaches the
+ * entity. Classes without constraints are not validated at all. The validator is built once and shared,
+ * it is thread safe. Validation calls, failures and time are counted per class, see {@link #getAllStats()}.
+ */
+public final class BodyValidator {
+
+  private static final Validator VALIDATOR = Validation.buildDefaultValidatorFactory().getValidator();
+  private static final ObjectMapper MAPPER = ObjectMapperTool.getMapper().copy()
+    .registerModule(new SimpleModule("read-only-properties").setDeserializerModifier(new ReadOnlySkipper()));
+  private static final ConcurrentMap<Class<?>, BodyValidator> VALIDATORS = new ConcurrentHashMap<>();
+
+  private final Class<?> entityClass;
+  private final ObjectReader reader;
+  private final boolean constrained;
+  private final List<String> readOnly;
+  private final LongAdder validations = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+
+  private BodyValidator(Class<?> entityClass) {
+    this.entityClass = entityClass;
+    this.reader = MAPPER.readerFor(entityClass);
+    BeanDescriptor descriptor = VALIDATOR.getConstraintsForClass(entityClass);
+    this.constrained = descriptor.isBeanConstrained();
+    List<String> names = new ArrayList<>();
+    for (PropertyDescriptor property : descriptor.getConstrainedProperties()) {
+      if (property.getConstraintDescriptors().stream()
+        .anyMatch(constraint -> constraint.getAnnotation() instanceof Null)) {
+        names.add(property.getPropertyName());
+      }
+    }
+    this.readOnly = Collections.unmodifiableList(names);
+  }
+
+  public static BodyValidator forClass(Class<?> entityClass) {
+    return VALIDATORS.computeIfAbsent(entityClass, BodyValidator::new);
+  }
+
+  /**
+   * @return reader of the entity class which skips the read-only properties, thread safe
+   */
+  public ObjectReader getReader() {
+    return reader;
+  }
+
+  /**
+   * Reads the entity straight from the bytes of the body, without decoding it to a String first - from the
+   * array backing the buffer if there is one, the body handler's buffers have one.
+   *
+   * @return the entity, its read-only properties skipped
+   */
+  public <T> T read(Buffer body) throws IOException {
+    ByteBuf buf = body.getByteBuf();
+    if (buf.hasArray()) {
+      return reader.readValue(buf.array(), buf.arrayOffset() + buf.readerIndex(), buf.readableBytes());
+    }
+    try (InputStream in = new ByteBufInputStream(buf)) {
+      return reader.readValue(in);
+    }
+  }
+
+  /**
+   * @return the top level read-only properties, skipped when reading
+   */
+  public List<String> getReadOnly() {
+    return readOnly;
+  }
+
+  /**
+   * @return the constraint violations of the entity, empty if there are none or the class has no constraints
+   */
+  public Set<ConstraintViolation<Object>> validate(Object entity) {
+    // null is rejected by the validator, as before
+    if (!constrained && entity != null) {
+      return Collections.emptySet();
+    }
+    long start = System.nanoTime();
+    Set<ConstraintViolation<Object>> violations = VALIDATOR.validate(entity);
+    totalNanos.add(System.nanoTime() - start);
+    validations.increment();
+    if (!violations.isEmpty()) {
+      failures.increment();
+    }
+    return violations;
+  }
+
+  public JsonObject getStats() {
+    long count = validations.sum();
+    long nanos = totalNanos.sum();
+    return new JsonObject()
+      .put("validations", count)
+      .put("failures", failures.sum())
+      .put("totalMicros", nanos / 1000)
+      .put("meanMicros", count == 0 ? 0d : nanos / 1000d / count)
+      .put("readOnly", new JsonArray(readOnly));
+  }
+
+  /**
+   * @return the stats of every class validated so far by class name
+   */
+  public static JsonObject getAllStats() {
+    JsonObject stats = new JsonObject();
+    VALIDATORS.forEach((clazz, validator) -> stats.put(clazz.getName(), validator.getStats()));
+    return stats;
+  }
+
+  /**
+   * prometheus counters of the validations by entity class
+   */
+  public static void writePrometheus(StringBuilder sb) {
+    sb.append("# HELP body_validation_seconds_total Time spent validating request bodies\n")
+      .append("# TYPE body_validation_seconds_total counter\n");
+    VALIDATORS.forEach((clazz, validator) -> sb.append("body_validation_seconds_total{entity=\"")
+      .append(clazz.getSimpleName()).append("\"} ").append(validator.totalNanos.sum() / 1e9).append('\n'));
+    sb.append("# HELP body_validations_total Request bodies validated\n")
+      .append("# TYPE body_validations_total counter\n");
+    VALIDATORS.forEach((clazz, validator) -> sb.append("body_validations_total{entity=\"")
+      .append(clazz.getSimpleName()).append("\"} ").append(validator.validations.sum()).append('\n'));
+    sb.append("# HELP body_validation_failures_total Request bodies failing validation\n")
+      .append("# TYPE body_validation_failures_total counter\n");
+    VALIDATORS.forEach((clazz, validator) -> sb.append("body_validation_failures_total{entity=\"")
+      .append(clazz.getSimpleName()).append("\"} ").append(validator.failures.sum()).append('\n'));
+  }
+
+  @Override
+  public String toString() {
+    return "BodyValidator[" + entityClass.getName() + "]";
+  }
+
+  /**
+   * drops the properties annotated {@link Null} from the deserializers and ignores them in the input,
+   * of nested objects as well
+   */
+  private static final class ReadOnlySkipper extends BeanDeserializerModifier {
+    @Override
+    public BeanDeserializerBuilder updateBuilder(DeserializationConfig config, BeanDescription beanDesc,
+                                                 BeanDeserializerBuilder builder) {
+      for (BeanPropertyDefinition property : beanDesc.findProperties()) {
+        if (isReadOnly(property.getField()) || isReadOnly(property.getSetter()) || isReadOnly(property.getGetter())) {
+          builder.removeProperty(property.getFullName());
+          builder.addIgnorable(property.getName());
+        }
+      }
+      return builder;
+    }
+
+    private static boolean isReadOnly(AnnotatedMember member) {
+      return member != null && member.hasAnnotation(Null.class);
+    }
+  }
+}
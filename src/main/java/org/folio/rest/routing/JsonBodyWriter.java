@@ -0,0 +1,37 @@
+package org.folio.rest.routing;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import org.folio.rest.tools.utils.ObjectMapperTool;
+
+import java.io.IOException;
+
+/**
+ * Serializes response entities to json straight into the buffer which is written to the response - no
+ * intermediate String and no copy. The writers are built once, compact output is the default, pretty
+ * printing (indented) is for humans reading the response and costs both time and bytes.
+ */
+public final class JsonBodyWriter {
+
+  private static final ObjectWriter COMPACT = ObjectMapperTool.getMapper().writer();
+  private static final ObjectWriter PRETTY = ObjectMapperTool.getMapper().writerWithDefaultPrettyPrinter();
+  private static final int INITIAL_CAPACITY = 512;
+
+  private JsonBodyWriter() {
+  }
+
+  /**
+   * @return the entity as json, indented if pretty
+   */
+  public static Buffer write(Object entity, boolean pretty) throws IOException {
+    // not pooled - vert.x buffers never give their netty buffer back to a pool
+    ByteBuf buf = Unpooled.buffer(INITIAL_CAPACITY);
+    try (ByteBufOutputStream out = new ByteBufOutputStream(buf)) {
+      (pretty ? PRETTY : COMPACT).writeValue(out, entity);
+    }
+    return Buffer.buffer(buf);
+  }
+}
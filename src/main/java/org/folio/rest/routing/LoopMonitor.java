@@ -0,0 +1,211 @@
+package org.folio.rest.routing;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Health of the event loops.
+ *
+ * Each verticle instance starts a monitor on its event loop - a timer firing every interval, how late it
+ * fires is the lag of the loop: the time a task queued behind the current work waits before it runs. A loop
+ * that keeps lagging is saturated, requests queue on it and latency grows with the queue.
+ *
+ * How long each function call holds the loop is recorded by the route and http method it serves - the same
+ * route template RequestMetrics labels requests with - shared by all loops. A call holding it longer than the
+ * blocked threshold of its loop's monitor is counted as a blocked incident of the route and logged, long
+ * before vert.x's blocked thread checker would warn.
+ *
+ * Written from the event loops, read from anywhere.
+ */
+public final class LoopMonitor {
+
+  public static final long DEFAULT_INTERVAL = 1000;
+  public static final long DEFAULT_BLOCKED_THRESHOLD = 100;
+
+  private static final Logger log = LoggerFactory.getLogger(LoopMonitor.class);
+  private static final ConcurrentMap<String, LoopMonitor> LOOPS = new ConcurrentHashMap<>();
+  private static final HttpMethod[] METHODS = HttpMethod.values();
+  // route -> timings by method
+  private static final ConcurrentMap<String, AtomicReferenceArray<Timing>> ROUTES = new ConcurrentHashMap<>();
+  private static final AtomicLong COUNTER = new AtomicLong();
+
+  private final String name;
+  private final long intervalNanos;
+  private final long blockedThresholdNanos;
+  private final Vertx vertx;
+  private long timerId = -1;
+  private long lastTick;
+  // only written by the loop
+  private volatile long lagNanos;
+  private volatile long maxLagNanos;
+  private volatile long ticks;
+  private volatile long laggedTicks;
+
+  private LoopMonitor(Vertx vertx, long intervalMillis, long blockedThresholdMillis) {
+    this.name = "loop-" + COUNTER.incrementAndGet();
+    this.vertx = vertx;
+    this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    this.blockedThresholdNanos = TimeUnit.MILLISECONDS.toNanos(blockedThresholdMillis);
+  }
+
+  /**
+   * Starts monitoring the event loop of the calling verticle.
+   *
+   * @param blockedThresholdMillis  lag and function calls holding this loop longer are blocked incidents
+   */
+  public static LoopMonitor start(Vertx vertx, long intervalMillis, long blockedThresholdMillis) {
+    LoopMonitor monitor = new LoopMonitor(vertx, intervalMillis, blockedThresholdMillis);
+    monitor.lastTick = System.nanoTime();
+    monitor.timerId = vertx.setPeriodic(intervalMillis, id -> monitor.tick());
+    LOOPS.put(monitor.name, monitor);
+    return monitor;
+  }
+
+  public void stop() {
+    vertx.cancelTimer(timerId);
+    LOOPS.remove(name);
+  }
+
+  private void tick() {
+    long now = System.nanoTime();
+    long lag = Math.max(0, now - lastTick - intervalNanos);
+    lastTick = now;
+    lagNanos = lag;
+    ticks++;
+    if (lag > maxLagNanos) {
+      maxLagNanos = lag;
+    }
+    if (lag > blockedThresholdNanos) {
+      laggedTicks++;
+      log.warn(name + " lagging " + TimeUnit.NANOSECONDS.toMillis(lag) + " ms");
+    }
+  }
+
+  /**
+   * Records a call of the function serving the route and method which held this monitor's loop for nanos.
+   *
+   * @param route  route template of the request, e.g. /pets/*
+   */
+  public void record(String route, HttpMethod method, long nanos) {
+    record(route, method, nanos, blockedThresholdNanos);
+  }
+
+  static void record(String route, HttpMethod method, long nanos, long blockedThresholdNanos) {
+    AtomicReferenceArray<Timing> timings = ROUTES.get(route);
+    if (timings == null) {
+      timings = ROUTES.computeIfAbsent(route, r -> new AtomicReferenceArray<>(METHODS.length));
+    }
+    Timing timing = timings.get(method.ordinal());
+    if (timing == null) {
+      timings.compareAndSet(method.ordinal(), null, new Timing());
+      timing = timings.get(method.ordinal());
+    }
+    timing.calls.increment();
+    timing.totalNanos.add(nanos);
+    timing.maxNanos.accumulateAndGet(nanos, Math::max);
+    if (nanos > blockedThresholdNanos) {
+      timing.blocked.increment();
+      log.warn(method + " " + route + " blocked the event loop for " + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms");
+    }
+  }
+
+  public JsonObject getStats() {
+    return new JsonObject()
+      .put("lagMs", TimeUnit.NANOSECONDS.toMillis(lagNanos))
+      .put("maxLagMs", TimeUnit.NANOSECONDS.toMillis(maxLagNanos))
+      .put("ticks", ticks)
+      .put("laggedTicks", laggedTicks)
+      .put("blockedThresholdMs", TimeUnit.NANOSECONDS.toMillis(blockedThresholdNanos));
+  }
+
+  /**
+   * @return lag by loop and call timings by route and method - calls, avgMicros, maxMicros and blocked incidents
+   */
+  public static JsonObject getAllStats() {
+    JsonObject loops = new JsonObject();
+    LOOPS.forEach((name, monitor) -> loops.put(name, monitor.getStats()));
+    JsonObject routes = new JsonObject();
+    ROUTES.forEach((route, timings) -> {
+      JsonObject methods = new JsonObject();
+      for (int i = 0; i < timings.length(); i++) {
+        Timing timing = timings.get(i);
+        if (timing != null) {
+          methods.put(METHODS[i].name(), timing.getStats());
+        }
+      }
+      routes.put(route, methods);
+    });
+    return new JsonObject()
+      .put("loops", loops)
+      .put("routes", routes);
+  }
+
+  private interface TimingConsumer {
+    void accept(String labels, Timing timing);
+  }
+
+  private static void forEachTiming(TimingConsumer consumer) {
+    ROUTES.forEach((route, timings) -> {
+      for (int i = 0; i < timings.length(); i++) {
+        Timing timing = timings.get(i);
+        if (timing != null) {
+          StringBuilder labels = new StringBuilder("route=\"");
+          RequestMetrics.escape(labels, route);
+          consumer.accept(labels.append("\",method=\"").append(METHODS[i].name()).append('"').toString(), timing);
+        }
+      }
+    });
+  }
+
+  /**
+   * Appends lag by loop and call timings by route and method in the prometheus text exposition format.
+   */
+  public static void writePrometheus(StringBuilder sb) {
+    sb.append("# HELP vertx_event_loop_lag_seconds Lag of the event loop at the last tick\n")
+      .append("# TYPE vertx_event_loop_lag_seconds gauge\n");
+    LOOPS.forEach((name, monitor) -> sb.append("vertx_event_loop_lag_seconds{loop=\"").append(name).append("\"} ")
+      .append(monitor.lagNanos / 1e9).append('\n'));
+    sb.append("# HELP vertx_event_loop_lag_max_seconds Largest lag of the event loop\n")
+      .append("# TYPE vertx_event_loop_lag_max_seconds gauge\n");
+    LOOPS.forEach((name, monitor) -> sb.append("vertx_event_loop_lag_max_seconds{loop=\"").append(name).append("\"} ")
+      .append(monitor.maxLagNanos / 1e9).append('\n'));
+    sb.append("# HELP vertx_event_loop_function_seconds_total Time the functions held the event loop\n")
+      .append("# TYPE vertx_event_loop_function_seconds_total counter\n");
+    forEachTiming((labels, timing) -> sb.append("vertx_event_loop_function_seconds_total{").append(labels)
+      .append("} ").append(timing.totalNanos.sum() / 1e9).append('\n'));
+    sb.append("# HELP vertx_event_loop_function_calls_total Calls of the functions\n")
+      .append("# TYPE vertx_event_loop_function_calls_total counter\n");
+    forEachTiming((labels, timing) -> sb.append("vertx_event_loop_function_calls_total{").append(labels)
+      .append("} ").append(timing.calls.sum()).append('\n'));
+    sb.append("# HELP vertx_event_loop_blocked_total Calls of the functions holding the event loop longer than the threshold\n")
+      .append("# TYPE vertx_event_loop_blocked_total counter\n");
+    forEachTiming((labels, timing) -> sb.append("vertx_event_loop_blocked_total{").append(labels)
+      .append("} ").append(timing.blocked.sum()).append('\n'));
+  }
+
+  private static final class Timing {
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final LongAdder blocked = new LongAdder();
+
+    private JsonObject getStats() {
+      long count = calls.sum();
+      return new JsonObject()
+        .put("calls", count)
+        .put("avgMicros", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.sum() / count))
+        .put("maxMicros", TimeUnit.NANOSECONDS.toMicros(maxNanos.get()))
+        .put("blocked", blocked.sum());
+    }
+  }
+}
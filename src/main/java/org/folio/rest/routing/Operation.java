@@ -0,0 +1,146 @@
+package org.folio.rest.routing;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.folio.rest.tools.AnnotationGrabber;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * A raml path + http method pair resolved to the function that serves it.
+ * Everything the verticle needs per request is read out of the mapping json once, here.
+ */
+public final class Operation {
+
+  private final String urlRegex;
+  private final String route;
+  private final String interfaceName;
+  private final String function;
+  private final JsonArray produces;
+  private final JsonArray consumes;
+  private final ParamSpec[] params;
+  private final boolean contentUpload;
+  private final int uploadParamPosition;
+  private final OperationInvoker invoker;
+  private final Exception invokerFailure;
+
+  Operation(String urlRegex, JsonObject mapping) {
+    this.urlRegex = urlRegex;
+    this.route = toRoute(urlRegex);
+    this.interfaceName = mapping.getString(AnnotationGrabber.CLASS_NAME);
+    this.function = mapping.getString(AnnotationGrabber.FUNCTION_NAME);
+    this.produces = mapping.getJsonArray(AnnotationGrabber.PRODUCES);
+    this.consumes = mapping.getJsonArray(AnnotationGrabber.CONSUMES);
+
+    JsonObject paramsJson = mapping.getJsonObject(AnnotationGrabber.METHOD_PARAMS);
+    List<ParamSpec> list = new ArrayList<>();
+    boolean upload = false;
+    int uploadPosition = -1;
+    if (paramsJson != null) {
+      // keep the iteration order of the json - path params are assigned relying on it
+      Iterator<Entry<String, Object>> iter = paramsJson.iterator();
+      while (iter.hasNext()) {
+        ParamSpec spec = ParamSpec.of((JsonObject) iter.next().getValue());
+        if (spec.isUpload()) {
+          upload = true;
+          uploadPosition = spec.getOrder();
+        }
+        list.add(spec);
+      }
+    }
+    this.params = list.toArray(new ParamSpec[list.size()]);
+    this.contentUpload = upload;
+    this.uploadParamPosition = uploadPosition;
+
+    OperationInvoker resolved = null;
+    Exception failure = null;
+    try {
+      resolved = OperationInvoker.resolve(interfaceName, function);
+    } catch (Exception e) {
+      // reported when the url is requested, as it was before the lookup was cached
+      failure = e;
+    }
+    this.invoker = resolved;
+    this.invokerFailure = failure;
+  }
+
+  /**
+   * @return the regex of the raml path as generated by the {@link AnnotationGrabber}
+   */
+  public String getUrlRegex() {
+    return urlRegex;
+  }
+
+  /**
+   * @return the raml path with * in place of path params, e.g. /pets/* - the regex if it has no such form
+   */
+  public String getRoute() {
+    return route;
+  }
+
+  private static String toRoute(String urlRegex) {
+    List<String> segments = RouteTable.toSegments(urlRegex);
+    if (segments == null) {
+      return urlRegex;
+    }
+    StringBuilder sb = new StringBuilder();
+    for (String segment : segments) {
+      sb.append('/').append(segment == null ? "*" : segment);
+    }
+    return sb.length() == 0 ? "/" : sb.toString();
+  }
+
+  /**
+   * @return the generated interface mapped to this url
+   */
+  public String getInterfaceName() {
+    return interfaceName;
+  }
+
+  public String getFunction() {
+    return function;
+  }
+
+  /**
+   * @return what the api will return as output (Accept)
+   */
+  public JsonArray getProduces() {
+    return produces;
+  }
+
+  /**
+   * @return what the api expects to get (content-type)
+   */
+  public JsonArray getConsumes() {
+    return consumes;
+  }
+
+  public ParamSpec[] getParams() {
+    return params;
+  }
+
+  /**
+   * @return true if multipart/form-data or application/octet-stream content is passed to the function
+   */
+  public boolean isContentUpload() {
+    return contentUpload;
+  }
+
+  public int getUploadParamPosition() {
+    return uploadParamPosition;
+  }
+
+  /**
+   * @return the pre-bound implementation of the function
+   * @throws Exception the reason the implementation could not be resolved at startup
+   */
+  public OperationInvoker getInvoker() throws Exception {
+    if (invoker == null) {
+      throw invokerFailure;
+    }
+    return invoker;
+  }
+}
@@ -0,0 +1,108 @@
+package org.folio.rest.routing;
+
+import io.vertx.core.Vertx;
+import org.folio.rest.annotations.Stream;
+import org.folio.rest.tools.RTFConsts;
+import org.folio.rest.tools.utils.InterfaceToImpl;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * Pre-bound call target of an {@link Operation}. The implementing class, its constructor and the
+ * function mapped to the url are resolved once at startup, the function is called through a
+ * {@link MethodHandle} spread over the parameter array so a request costs one direct call
+ * instead of a classpath lookup, a constructor lookup, a method scan and a reflective invoke.
+ */
+public final class OperationInvoker {
+
+  private final Class<?> implClass;
+  private final Constructor<?> tenantConstructor;
+  private final Method method;
+  private final MethodHandle handle;
+  private final boolean streamed;
+
+  /**
+   * @param implClass  class implementing the interface generated from the raml
+   * @param function  name of the function mapped to the url
+   * @throws NoSuchMethodException if the class has no public function with that name
+   * @throws IllegalAccessException if the function can not be accessed
+   */
+  public OperationInvoker(Class<?> implClass, String function) throws NoSuchMethodException, IllegalAccessException {
+    this.implClass = implClass;
+    this.tenantConstructor = findTenantConstructor(implClass);
+    this.method = findMethod(implClass, function);
+    MethodHandle mh = MethodHandles.publicLookup().unreflect(method);
+    // (impl, p1..pn) -> (Object, Object[])Object so it can be called with invokeExact
+    this.handle = mh.asType(mh.type().generic()).asSpreader(Object[].class, method.getParameterCount());
+    this.streamed = method.isAnnotationPresent(Stream.class);
+  }
+
+  /**
+   * convert from interface to an actual class implementing it, which appears in the impl package
+   */
+  public static OperationInvoker resolve(String interfaceName, String function) throws Exception {
+    Class<?> aClass = InterfaceToImpl.convert2Impl(RTFConsts.PACKAGE_OF_IMPLEMENTATIONS, interfaceName, false).get(0);
+    return new OperationInvoker(aClass, function);
+  }
+
+  private static Constructor<?> findTenantConstructor(Class<?> clazz) {
+    try {
+      return clazz.getConstructor(Vertx.class, String.class);
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  private static Method findMethod(Class<?> clazz, String function) throws NoSuchMethodException {
+    Method[] methods = clazz.getMethods();
+    for (int i = 0; i < methods.length; i++) {
+      if (methods[i].getName().equals(function)) {
+        return methods[i];
+      }
+    }
+    throw new NoSuchMethodException(clazz.getName() + "." + function);
+  }
+
+  /**
+   * call back the constructor of the class - gives a hook into the class not based on the apis
+   * passing the vertx and tenant in to it. if no such constructor was implemented (or it fails) the
+   * default no param constructor is used
+   */
+  public Object newInstance(Vertx vertx, String tenantId) throws ReflectiveOperationException {
+    if (tenantConstructor != null) {
+      try {
+        return tenantConstructor.newInstance(vertx, tenantId);
+      } catch (Exception e) {
+        // fall through to the default constructor
+      }
+    }
+    return implClass.newInstance();
+  }
+
+  /**
+   * @param instance  object created by {@link #newInstance(Vertx, String)}
+   * @param args  all arguments of the function including the injected ones
+   * @throws Throwable whatever the function throws, not wrapped
+   */
+  public void invoke(Object instance, Object[] args) throws Throwable {
+    Object ignored = (Object) handle.invokeExact(instance, args);
+  }
+
+  public Class<?> getImplClass() {
+    return implClass;
+  }
+
+  public Method getMethod() {
+    return method;
+  }
+
+  /**
+   * @return true if the function is annotated to receive data in chunks as they come in
+   */
+  public boolean isStreamed() {
+    return streamed;
+  }
+}
@@ -0,0 +1,167 @@
+package org.folio.rest.routing;
+
+import io.vertx.core.json.JsonObject;
+import org.folio.rest.tools.AnnotationGrabber;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Pre-parsed description of a single parameter of a function mapped to a raml path.
+ * Built once at startup from the {@link AnnotationGrabber#METHOD_PARAMS} json so that
+ * the request path never has to read the mapping json or resolve classes by name.
+ */
+public final class ParamSpec {
+
+  public static final String FILE_UPLOAD_PARAM = "javax.mail.internet.MimeMultipart";
+  public static final String INPUT_STREAM_PARAM = "java.io.InputStream";
+
+  /**
+   * non annotated parameters which are injected by the verticle (or streamed to the function)
+   * and are therefore never read from the request body
+   */
+  private static final Set<String> INJECTED_TYPES = new HashSet<>(Arrays.asList(
+    "io.vertx.core.Handler", "io.reactivex.SingleObserver", "io.vertx.core.Context",
+    "java.util.Map", INPUT_STREAM_PARAM, "io.vertx.ext.web.RoutingContext"));
+
+  public enum Kind {
+    /** entity passed in the http body */
+    BODY,
+    /** handler, context, okapi headers etc. - populated by the verticle */
+    INJECTED,
+    /** multipart upload - populated by the upload handler */
+    UPLOAD,
+    HEADER,
+    PATH,
+    QUERY,
+    OTHER
+  }
+
+  /**
+   * conversion applied to a query parameter - the checks are done in the same order
+   * as the original string matching on the declared type
+   */
+  public enum QueryType {
+    STRING, INT, BOOLEAN, LIST, DECIMAL, ENUM
+  }
+
+  private final String name;
+  private final String type;
+  private final Kind kind;
+  private final QueryType queryType;
+  private final int order;
+  private final Object defaultValue;
+  private final Class<?> entityClass;
+  private final Object[] enumConstants;
+
+  private ParamSpec(JsonObject param) {
+    this.name = param.getString("value");
+    this.type = param.getString("type");
+    this.order = param.getInteger("order");
+    this.defaultValue = param.getValue("default_value");
+    String paramType = param.getString("param_type");
+
+    Class<?> clazz = null;
+    Object[] constants = null;
+    QueryType qType = null;
+    if (AnnotationGrabber.NON_ANNOTATED_PARAM.equals(paramType)) {
+      if (FILE_UPLOAD_PARAM.equals(type)) {
+        kind = Kind.UPLOAD;
+      } else if (INJECTED_TYPES.contains(type)) {
+        kind = Kind.INJECTED;
+      } else {
+        kind = Kind.BODY;
+        // left null if it can not be loaded, the request will then fail the same way it always did
+        clazz = loadClass(type);
+      }
+    } else if (AnnotationGrabber.HEADER_PARAM.equals(paramType)) {
+      kind = Kind.HEADER;
+    } else if (AnnotationGrabber.PATH_PARAM.equals(paramType)) {
+      kind = Kind.PATH;
+    } else if (AnnotationGrabber.QUERY_PARAM.equals(paramType)) {
+      kind = Kind.QUERY;
+      qType = toQueryType(type);
+      if (qType == QueryType.ENUM) {
+        Class<?> enumClazz = loadClass(type);
+        if (enumClazz != null && enumClazz.isEnum()) {
+          constants = enumClazz.getEnumConstants();
+        }
+      }
+    } else {
+      kind = Kind.OTHER;
+    }
+    this.entityClass = clazz;
+    this.queryType = qType;
+    this.enumConstants = constants;
+  }
+
+  public static ParamSpec of(JsonObject param) {
+    return new ParamSpec(param);
+  }
+
+  private static QueryType toQueryType(String valueType) {
+    if (valueType.contains("String")) {
+      return QueryType.STRING;
+    } else if (valueType.contains("int") || valueType.contains("Integer")) {
+      return QueryType.INT;
+    } else if (valueType.contains("boolean") || valueType.contains("Boolean")) {
+      return QueryType.BOOLEAN;
+    } else if (valueType.contains("List")) {
+      return QueryType.LIST;
+    } else if (valueType.contains("BigDecimal") || valueType.contains("Number")) {
+      return QueryType.DECIMAL;
+    }
+    return QueryType.ENUM;
+  }
+
+  private static Class<?> loadClass(String name) {
+    try {
+      return Class.forName(name);
+    } catch (ClassNotFoundException | LinkageError e) {
+      return null;
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public Kind getKind() {
+    return kind;
+  }
+
+  public QueryType getQueryType() {
+    return queryType;
+  }
+
+  public int getOrder() {
+    return order;
+  }
+
+  public Object getDefaultValue() {
+    return defaultValue;
+  }
+
+  /**
+   * @return the class the body is deserialized into, null if it could not be loaded
+   */
+  public Class<?> getEntityClass() {
+    return entityClass;
+  }
+
+  /**
+   * @return constants of the enum a query parameter maps to, null if the type is not an enum
+   */
+  public Object[] getEnumConstants() {
+    return enumConstants;
+  }
+
+  public boolean isUpload() {
+    return FILE_UPLOAD_PARAM.equals(type) || INPUT_STREAM_PARAM.equals(type);
+  }
+}
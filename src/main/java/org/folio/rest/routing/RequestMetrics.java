@@ -0,0 +1,216 @@
+package org.folio.rest.routing;
+
+import io.vertx.core.http.HttpMethod;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Latency histograms and byte counters of the requests by tenant, route, method and status, exposed in the
+ * prometheus text format.
+ *
+ * The histograms are log-linear like HdrHistogram's: latencies in microseconds fall into buckets of four
+ * per power of two, so every bucket is at most a quarter of its value wide - exact below 8 microseconds,
+ * about 2 ms wide at 10 ms, and so on up to 2^26 microseconds (67 s), beyond which they are only counted.
+ *
+ * Recording takes no lock and allocates nothing once the series of a tenant, route, method and status
+ * exists - a few map lookups by strings the request already has and atomic increments.
+ *
+ * The tenant label comes from a request header, so the number of tenants with their own series is capped -
+ * the requests of the tenants beyond the cap are recorded under the tenant "other".
+ */
+public final class RequestMetrics {
+
+  private static final int SUB_BUCKET_BITS = 2;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 25;
+  /** buckets of the histogram, values above the last one only count in +Inf */
+  static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+  private static final int STATUS_CODES = 600;
+  private static final HttpMethod[] METHODS = HttpMethod.values();
+  private static final String NO_TENANT = "";
+  static final String OTHER_TENANT = "other";
+  public static final int DEFAULT_MAX_TENANTS = 100;
+
+  private static volatile int maxTenants = DEFAULT_MAX_TENANTS;
+
+  // tenant -> route -> series by method and status
+  private static final ConcurrentMap<String, ConcurrentMap<String, AtomicReferenceArray<Series>>> SERIES =
+    new ConcurrentHashMap<>();
+
+  private RequestMetrics() {
+  }
+
+  /**
+   * @param max  tenants recorded by their own label, the ones seen first - the rest are recorded as "other"
+   */
+  public static void setMaxTenants(int max) {
+    maxTenants = max;
+  }
+
+  /**
+   * @return the number of tenants recorded by their own label, "other" included
+   */
+  static int tenants() {
+    return SERIES.size();
+  }
+
+  /**
+   * @param tenant  may be null
+   * @param micros  latency of the request
+   */
+  public static void record(String tenant, String route, HttpMethod method, int status, long micros,
+                            long requestBytes, long responseBytes) {
+    String tenantKey = tenant == null ? NO_TENANT : tenant;
+    ConcurrentMap<String, AtomicReferenceArray<Series>> routes = SERIES.get(tenantKey);
+    if (routes == null) {
+      // a few concurrent new tenants may get past the cap, the series stay bounded all the same
+      if (SERIES.size() >= maxTenants) {
+        tenantKey = OTHER_TENANT;
+      }
+      routes = SERIES.computeIfAbsent(tenantKey, t -> new ConcurrentHashMap<>());
+    }
+    AtomicReferenceArray<Series> series = routes.get(route);
+    if (series == null) {
+      series = routes.computeIfAbsent(route, r -> new AtomicReferenceArray<>(METHODS.length * STATUS_CODES));
+    }
+    int index = method.ordinal() * STATUS_CODES + (status < 0 || status >= STATUS_CODES ? 0 : status);
+    Series s = series.get(index);
+    if (s == null) {
+      series.compareAndSet(index, null, new Series());
+      s = series.get(index);
+    }
+    s.record(micros, requestBytes, responseBytes);
+  }
+
+  /**
+   * @return bucket of the latency
+   */
+  static int bucket(long micros) {
+    if (micros < SUB_BUCKETS) {
+      return (int) Math.max(0, micros);
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    if (exponent > MAX_EXPONENT) {
+      return BUCKETS;
+    }
+    int sub = (int) (micros >> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+  }
+
+  /**
+   * @return the largest latency in the bucket, in microseconds
+   */
+  static long upperBound(int bucket) {
+    int group = bucket / SUB_BUCKETS;
+    int sub = bucket % SUB_BUCKETS;
+    if (group == 0) {
+      return sub;
+    }
+    int shift = group - 1;
+    return ((long) (SUB_BUCKETS + sub + 1) << shift) - 1;
+  }
+
+  /**
+   * Appends the histograms and counters in the prometheus text exposition format.
+   */
+  public static void writePrometheus(StringBuilder sb) {
+    sb.append("# HELP http_server_requests_seconds Latency of the requests\n")
+      .append("# TYPE http_server_requests_seconds histogram\n");
+    forEach((labels, s) -> {
+      long cumulative = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        cumulative += s.counts.get(i);
+        sb.append("http_server_requests_seconds_bucket{").append(labels).append(",le=\"");
+        appendSeconds(sb, upperBound(i));
+        sb.append("\"} ").append(cumulative).append('\n');
+      }
+      long count = s.count.get();
+      sb.append("http_server_requests_seconds_bucket{").append(labels).append(",le=\"+Inf\"} ").append(count).append('\n');
+      sb.append("http_server_requests_seconds_sum{").append(labels).append("} ");
+      appendSeconds(sb, s.sumMicros.get());
+      sb.append('\n');
+      sb.append("http_server_requests_seconds_count{").append(labels).append("} ").append(count).append('\n');
+    });
+    sb.append("# HELP http_server_request_bytes_total Bytes of the request bodies\n")
+      .append("# TYPE http_server_request_bytes_total counter\n");
+    forEach((labels, s) ->
+      sb.append("http_server_request_bytes_total{").append(labels).append("} ").append(s.requestBytes.get()).append('\n'));
+    sb.append("# HELP http_server_response_bytes_total Bytes of the responses\n")
+      .append("# TYPE http_server_response_bytes_total counter\n");
+    forEach((labels, s) ->
+      sb.append("http_server_response_bytes_total{").append(labels).append("} ").append(s.responseBytes.get()).append('\n'));
+  }
+
+  private interface SeriesConsumer {
+    void accept(String labels, Series series);
+  }
+
+  private static void forEach(SeriesConsumer consumer) {
+    for (Map.Entry<String, ConcurrentMap<String, AtomicReferenceArray<Series>>> tenant : SERIES.entrySet()) {
+      for (Map.Entry<String, AtomicReferenceArray<Series>> route : tenant.getValue().entrySet()) {
+        AtomicReferenceArray<Series> series = route.getValue();
+        for (int i = 0; i < series.length(); i++) {
+          Series s = series.get(i);
+          if (s != null) {
+            consumer.accept(labels(tenant.getKey(), route.getKey(), METHODS[i / STATUS_CODES], i % STATUS_CODES), s);
+          }
+        }
+      }
+    }
+  }
+
+  private static String labels(String tenant, String route, HttpMethod method, int status) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("tenant=\"");
+    escape(sb, tenant);
+    sb.append("\",route=\"");
+    escape(sb, route);
+    return sb.append("\",method=\"").append(method.name()).append("\",status=\"").append(status).append('"').toString();
+  }
+
+  /**
+   * appends a prometheus label value, escaping backslash, double quote and line feed
+   */
+  public static void escape(StringBuilder sb, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\\' || c == '"') {
+        sb.append('\\').append(c);
+      } else if (c == '\n') {
+        sb.append("\\n");
+      } else {
+        sb.append(c);
+      }
+    }
+  }
+
+  private static void appendSeconds(StringBuilder sb, long micros) {
+    sb.append(micros / 1000000).append('.');
+    String fraction = Long.toString(micros % 1000000);
+    for (int i = fraction.length(); i < 6; i++) {
+      sb.append('0');
+    }
+    sb.append(fraction);
+  }
+
+  private static final class Series {
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumMicros = new AtomicLong();
+    private final AtomicLong requestBytes = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+
+    private void record(long micros, long requestBytes, long responseBytes) {
+      counts.incrementAndGet(bucket(micros));
+      count.incrementAndGet();
+      sumMicros.addAndGet(micros);
+      this.requestBytes.addAndGet(requestBytes);
+      this.responseBytes.addAndGet(responseBytes);
+    }
+  }
+}
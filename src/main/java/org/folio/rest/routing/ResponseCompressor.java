@@ -0,0 +1,185 @@
+package org.folio.rest.routing;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses response bodies with gzip or deflate, whichever the client prefers, gzip if it has no preference -
+ * done here rather than by the http server so that bodies below the threshold can be sent as they are without
+ * a Content-Encoding header, the server's compressor compresses every response the client accepts compressed
+ * unless it already carries one. deflate is the zlib format, as HTTP defines it.
+ *
+ * In memory bodies are compressed at once, streamed ones by a {@link Stream} which the items are written to
+ * and which is flushed so the client can decode what has been sent so far.
+ */
+public final class ResponseCompressor {
+
+  public static final String GZIP = "gzip";
+  public static final String DEFLATE = "deflate";
+
+  private final int level;
+  private final int threshold;
+
+  /**
+   * @param level  deflate level, 1 (fast) to 9 (small)
+   * @param threshold  bodies smaller than this many bytes are not compressed
+   */
+  public ResponseCompressor(int level, int threshold) {
+    this.level = level;
+    this.threshold = threshold;
+  }
+
+  /**
+   * @return the encoding of the Accept-Encoding header to compress with - gzip or deflate, by q value with
+   *   the wildcard standing for the ones not named, gzip on a tie - null if it accepts neither
+   */
+  public static String encoding(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return null;
+    }
+    Double gzip = null;
+    Double deflate = null;
+    Double wildcard = null;
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.split(";");
+      String name = parts[0].trim();
+      double q = 1;
+      for (int i = 1; i < parts.length; i++) {
+        String param = parts[i].trim();
+        if (param.startsWith("q=")) {
+          try {
+            q = Double.parseDouble(param.substring(2).trim());
+          } catch (NumberFormatException e) {
+            q = 0;
+          }
+        }
+      }
+      if (GZIP.equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name)) {
+        gzip = q;
+      } else if (DEFLATE.equalsIgnoreCase(name)) {
+        deflate = q;
+      } else if ("*".equals(name)) {
+        wildcard = q;
+      }
+    }
+    double gzipQ = gzip != null ? gzip : wildcard != null ? wildcard : 0;
+    double deflateQ = deflate != null ? deflate : wildcard != null ? wildcard : 0;
+    if (gzipQ > 0 && gzipQ >= deflateQ) {
+      return GZIP;
+    }
+    return deflateQ > 0 ? DEFLATE : null;
+  }
+
+  /**
+   * @return true if the body is large enough to be compressed
+   */
+  public boolean shouldCompress(Buffer body) {
+    return body.length() >= threshold;
+  }
+
+  /**
+   * @param encoding  gzip or deflate, see {@link #encoding(String)}
+   */
+  public Buffer compress(Buffer body, String encoding) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length() / 4));
+    try (DeflaterOutputStream compressed = compressor(out, encoding, false)) {
+      compressed.write(body.getBytes());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return Buffer.buffer(out.toByteArray());
+  }
+
+  /**
+   * @param encoding  gzip or deflate, see {@link #encoding(String)}
+   */
+  public Stream stream(String encoding) {
+    return new Stream(encoding);
+  }
+
+  private DeflaterOutputStream compressor(ByteArrayOutputStream out, String encoding, boolean syncFlush)
+    throws IOException {
+    if (DEFLATE.equals(encoding)) {
+      // a deflater of its own is not ended by close()
+      return new DeflaterOutputStream(out, new Deflater(level), 8192, syncFlush) {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            def.end();
+          }
+        }
+      };
+    }
+    return new GZIPOutputStream(out, 8192, syncFlush) {
+      {
+        def.setLevel(level);
+      }
+    };
+  }
+
+  /**
+   * The compressed form of a stream of buffers, not thread safe.
+   */
+  public final class Stream {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+    private final DeflaterOutputStream compressed;
+
+    private Stream(String encoding) {
+      try {
+        compressed = compressor(out, encoding, true);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    /**
+     * @return what the compressor has output so far, may be empty
+     */
+    public Buffer write(Buffer data) {
+      try {
+        compressed.write(data.getBytes());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return drain();
+    }
+
+    /**
+     * @return everything written so far that has not been output yet, decodable by the client
+     */
+    public Buffer flush() {
+      try {
+        compressed.flush();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return drain();
+    }
+
+    /**
+     * @return the rest of the compressed stream, the stream can't be written to any more
+     */
+    public Buffer finish() {
+      try {
+        compressed.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return drain();
+    }
+
+    private Buffer drain() {
+      Buffer buffer = Buffer.buffer(out.toByteArray());
+      out.reset();
+      return buffer;
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package org.folio.rest.routing;
+
+import io.reactivex.FlowableSubscriber;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.folio.rest.utils.PgPool;
+import org.reactivestreams.Subscription;
+
+/**
+ * Writes the items of a stream to a chunked response as they come - a {@link Buffer} as is, anything else
+ * as its string. Items are requested in small batches and only while the write queue of the response is
+ * not full, a slow client therefore slows down the source instead of the items piling up in memory.
+ *
+ * Must be subscribed on the context of the response. The response is ended once the stream completes. If
+ * the stream fails before anything has been written the client gets a 500 with the message instead - a 503
+ * if the database pool is exhausted - if it fails after the status has been sent the connection is closed so
+ * the client sees the response is incomplete. Closing the connection cancels the stream.
+ *
+ * With a compressed stream the items of a batch are compressed together and flushed once the batch is
+ * written, the Content-Encoding header is the caller's.
+ */
+public final class ResponseStreamer implements FlowableSubscriber<Object> {
+
+  private static final Logger log = LoggerFactory.getLogger(ResponseStreamer.class);
+  private static final int BATCH = 64;
+
+  private final HttpServerResponse response;
+  private final Handler<Throwable> endHandler;
+  private final ResponseCompressor.Stream compression;
+  private Subscription subscription;
+  private int pending;
+  private boolean done;
+
+  /**
+   * @param endHandler  called once the response is ended or closed, with the error if the stream failed
+   */
+  public ResponseStreamer(HttpServerResponse response, Handler<Throwable> endHandler) {
+    this(response, null, endHandler);
+  }
+
+  /**
+   * @param compression  the items are written to it and what it outputs to the response, null to write them as is
+   * @param endHandler  called once the response is ended or closed, with the error if the stream failed
+   */
+  public ResponseStreamer(HttpServerResponse response, ResponseCompressor.Stream compression,
+                          Handler<Throwable> endHandler) {
+    this.response = response;
+    this.compression = compression;
+    this.endHandler = endHandler;
+  }
+
+  @Override
+  public void onSubscribe(Subscription s) {
+    subscription = s;
+    response.setChunked(true);
+    response.drainHandler(v -> requestMore());
+    response.closeHandler(v -> {
+      if (!done) {
+        done = true;
+        subscription.cancel();
+        release();
+        endHandler.handle(null);
+      }
+    });
+    requestMore();
+  }
+
+  private void requestMore() {
+    if (!done && pending == 0) {
+      pending = BATCH;
+      subscription.request(BATCH);
+    }
+  }
+
+  @Override
+  public void onNext(Object item) {
+    if (done) {
+      return;
+    }
+    Buffer buffer = item instanceof Buffer ? (Buffer) item : Buffer.buffer(String.valueOf(item));
+    pending--;
+    if (compression == null) {
+      response.write(buffer);
+    } else {
+      write(compression.write(buffer));
+      if (pending == 0) {
+        write(compression.flush());
+      }
+    }
+    // otherwise the drain handler asks for more
+    if (!response.writeQueueFull()) {
+      requestMore();
+    }
+  }
+
+  @Override
+  public void onError(Throwable t) {
+    if (done) {
+      return;
+    }
+    done = true;
+    log.error(t.getMessage(), t);
+    release();
+    if (response.headWritten()) {
+      response.close();
+    } else {
+      String message = t.getMessage() == null ? t.getClass().getName() : t.getMessage();
+      response.setStatusCode(t instanceof PgPool.PoolExhaustedException ? 503 : 500);
+      response.setChunked(false);
+      response.headers().remove(HttpHeaders.CONTENT_ENCODING);
+      response.putHeader(HttpHeaders.CONTENT_TYPE, "text/plain");
+      response.end(message);
+    }
+    endHandler.handle(t);
+  }
+
+  @Override
+  public void onComplete() {
+    if (done) {
+      return;
+    }
+    done = true;
+    if (compression == null) {
+      response.end();
+    } else {
+      response.end(compression.finish());
+    }
+    endHandler.handle(null);
+  }
+
+  private void write(Buffer compressed) {
+    if (compressed.length() > 0) {
+      response.write(compressed);
+    }
+  }
+
+  /**
+   * frees the compressor of a stream which does not complete
+   */
+  private void release() {
+    if (compression != null) {
+      compression.finish();
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package org.folio.rest.routing;
+
+import io.vertx.core.http.HttpMethod;
+
+import java.util.Map;
+
+/**
+ * Result of a {@link RouteTable} lookup - the url declared in the raml which matched the requested path.
+ */
+public final class RouteMatch {
+
+  private final Map<HttpMethod, Operation> operations;
+  private final String[] pathParams;
+
+  RouteMatch(Map<HttpMethod, Operation> operations, String[] pathParams) {
+    this.operations = operations;
+    this.pathParams = pathParams;
+  }
+
+  /**
+   * @return the operation mapped to the http method or null if the url exists but the method does not
+   */
+  public Operation getOperation(HttpMethod method) {
+    return operations.get(method);
+  }
+
+  /**
+   * pathParams are the place holders in the raml path, for example /admin/{admin_id}/yyy/{yyy_id},
+   * in the order they appear in the path
+   */
+  public String[] getPathParams() {
+    return pathParams;
+  }
+}
@@ -0,0 +1,207 @@
+package org.folio.rest.routing;
+
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.folio.rest.MappedClasses;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Dispatch table for the urls declared in the raml files, built once when the verticle starts.
+ *
+ * The url regexes generated by the {@link org.folio.rest.tools.AnnotationGrabber} are turned into a trie
+ * of path segments - literal segments are looked up in a map, path params ({id}) are a single wildcard
+ * child per node. Each node that ends a url holds the {@link Operation} per http method, so resolving a
+ * request is one walk over the path with no regex and no json access. Literal segments win over
+ * wildcards, so /pets/adopt is never mistaken for /pets/{id}.
+ *
+ * A regex that can not be expressed as segments is kept as is and only tried when the trie has no match.
+ */
+public final class RouteTable {
+
+  private static final Logger log = LoggerFactory.getLogger(RouteTable.class);
+
+  private static final Pattern LITERAL_SEGMENT = Pattern.compile("[A-Za-z0-9_~%\\-]*");
+  private static final Set<String> WILDCARD_SEGMENTS = Collections.unmodifiableSet(
+    new HashSet<>(Arrays.asList("([^/]+)", "([^\\/]+)")));
+
+  private final Node root = new Node();
+  private final List<RegexRoute> fallback = new ArrayList<>();
+  private int routeCount = 0;
+  private int maxParams = 0;
+
+  private RouteTable() {
+  }
+
+  /**
+   * @param mappedURLs  maps paths found in raml to the generated functions to route to
+   */
+  public static RouteTable build(MappedClasses mappedURLs) {
+    RouteTable table = new RouteTable();
+    for (String urlRegex : mappedURLs.getAvailURLs()) {
+      Map<HttpMethod, Operation> operations = new EnumMap<>(HttpMethod.class);
+      for (HttpMethod method : HttpMethod.values()) {
+        JsonObject mapping = mappedURLs.getMethodbyPath(urlRegex, method.name());
+        if (mapping != null) {
+          operations.put(method, new Operation(urlRegex, mapping));
+        }
+      }
+      table.add(urlRegex, operations);
+    }
+    log.info("route table built: " + table.routeCount + " urls in trie, " + table.fallback.size() + " matched by regex");
+    return table;
+  }
+
+  private void add(String urlRegex, Map<HttpMethod, Operation> operations) {
+    List<String> segments = toSegments(urlRegex);
+    if (segments == null) {
+      fallback.add(new RegexRoute(Pattern.compile(urlRegex), operations));
+      return;
+    }
+    Node node = root;
+    for (String segment : segments) {
+      if (segment == null) {
+        if (node.wildcard == null) {
+          node.wildcard = new Node();
+        }
+        node = node.wildcard;
+      } else {
+        node = node.literals.computeIfAbsent(segment, s -> new Node());
+      }
+    }
+    node.paramCount = countWildcards(segments);
+    maxParams = Math.max(maxParams, node.paramCount);
+    if (node.operations == null) {
+      node.operations = new EnumMap<>(HttpMethod.class);
+    }
+    node.operations.putAll(operations);
+    routeCount++;
+  }
+
+  /**
+   * Splits an anchored url regex such as ^/pets/([^/]+)$ into its segments, path params
+   * are returned as null.
+   * @return the segments or null if the regex can not be represented by literal and wildcard segments
+   */
+  static List<String> toSegments(String urlRegex) {
+    if (urlRegex == null || !urlRegex.startsWith("^/") || !urlRegex.endsWith("$")) {
+      return null;
+    }
+    String path = urlRegex.substring(2, urlRegex.length() - 1);
+    List<String> segments = new ArrayList<>();
+    if (path.isEmpty()) {
+      return segments;
+    }
+    for (String part : path.replace("\\/", "\u0000").split("/", -1)) {
+      String segment = part.replace("\u0000", "\\/");
+      if (WILDCARD_SEGMENTS.contains(segment)) {
+        segments.add(null);
+      } else if (!segment.isEmpty() && LITERAL_SEGMENT.matcher(segment).matches()) {
+        segments.add(segment);
+      } else {
+        return null;
+      }
+    }
+    return segments;
+  }
+
+  private static int countWildcards(List<String> segments) {
+    int count = 0;
+    for (String segment : segments) {
+      if (segment == null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @param path  the path of the request
+   * @return the matched url with its path params, or null if the path is not declared in the raml
+   */
+  public RouteMatch lookup(String path) {
+    if (path != null && path.length() > 0 && path.charAt(0) == '/') {
+      String[] params = new String[maxParams];
+      Node node = path.length() == 1 ? (root.operations == null ? null : root) : match(root, path, 1, params, 0);
+      if (node != null) {
+        String[] pathParams = new String[node.paramCount];
+        System.arraycopy(params, 0, pathParams, 0, node.paramCount);
+        return new RouteMatch(node.operations, pathParams);
+      }
+    }
+    return lookupRegex(path);
+  }
+
+  private static Node match(Node node, String path, int from, String[] params, int paramIdx) {
+    int len = path.length();
+    if (from > len) {
+      return node.operations == null ? null : node;
+    }
+    int end = path.indexOf('/', from);
+    if (end == -1) {
+      end = len;
+    }
+    // the segment is the text between from and end, a trailing '/' yields an empty segment
+    // which is never declared in a raml path
+    if (end == from) {
+      return null;
+    }
+    Node literal = node.literals.isEmpty() ? null : node.literals.get(path.substring(from, end));
+    if (literal != null) {
+      Node found = match(literal, path, end + 1, params, paramIdx);
+      if (found != null) {
+        return found;
+      }
+    }
+    if (node.wildcard != null && paramIdx < params.length) {
+      params[paramIdx] = path.substring(from, end);
+      return match(node.wildcard, path, end + 1, params, paramIdx + 1);
+    }
+    return null;
+  }
+
+  private RouteMatch lookupRegex(String path) {
+    for (int i = 0; i < fallback.size(); i++) {
+      RegexRoute route = fallback.get(i);
+      Matcher m = route.pattern.matcher(path);
+      if (m.find()) {
+        int groups = m.groupCount();
+        String[] pathParams = new String[groups];
+        for (int j = 0; j < groups; j++) {
+          pathParams[j] = m.group(j + 1);
+        }
+        return new RouteMatch(route.operations, pathParams);
+      }
+    }
+    return null;
+  }
+
+  private static final class Node {
+    private final Map<String, Node> literals = new HashMap<>();
+    private Node wildcard;
+    private Map<HttpMethod, Operation> operations;
+    private int paramCount;
+  }
+
+  private static final class RegexRoute {
+    private final Pattern pattern;
+    private final Map<HttpMethod, Operation> operations;
+
+    private RegexRoute(Pattern pattern, Map<HttpMethod, Operation> operations) {
+      this.pattern = pattern;
+      this.operations = operations;
+    }
+  }
+}
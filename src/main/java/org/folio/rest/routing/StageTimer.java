@@ -0,0 +1,114 @@
+package org.folio.rest.routing;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Where the time of a request went - routing, parsing the parameters, validating the body, the function
+ * (including the database round trips it makes) and serializing the response.
+ *
+ * The stages follow each other, {@link #mark(Stage)} adds the time since the previous mark to a stage, so
+ * timing a request costs one nanoTime per stage. Only a sample of the requests is timed, see
+ * {@link #sample(double)} - the others don't get a timer and pay for nothing but the draw.
+ * Not thread safe, a timer belongs to the event loop of its request.
+ */
+public final class StageTimer {
+
+  public enum Stage {
+    ROUTE("route"),
+    PARAMS("params"),
+    VALIDATE("validate"),
+    HANDLER("handler"),
+    SERIALIZE("serialize");
+
+    private final String metric;
+
+    Stage(String metric) {
+      this.metric = metric;
+    }
+
+    public String getMetric() {
+      return metric;
+    }
+  }
+
+  private static final Stage[] STAGES = Stage.values();
+
+  private final long start;
+  private final long[] offsets = new long[STAGES.length];
+  private final long[] durations = new long[STAGES.length];
+  private long last;
+
+  public StageTimer(long start) {
+    this.start = start;
+    this.last = start;
+    Arrays.fill(offsets, -1);
+  }
+
+  /**
+   * @param rate  share of the requests to time, from 0 to 1
+   * @return true if the request is to be timed
+   */
+  public static boolean sample(double rate) {
+    return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+  }
+
+  /**
+   * adds the time since the previous mark, or the start, to the stage
+   */
+  public void mark(Stage stage) {
+    long now = System.nanoTime();
+    int i = stage.ordinal();
+    if (offsets[i] < 0) {
+      offsets[i] = last - start;
+    }
+    durations[i] += now - last;
+    last = now;
+  }
+
+  /**
+   * @return value of a Server-Timing header with the stages reached and the total up to now, in milliseconds
+   */
+  public String toServerTiming() {
+    StringBuilder sb = new StringBuilder(128);
+    for (Stage stage : STAGES) {
+      if (offsets[stage.ordinal()] >= 0) {
+        sb.append(stage.metric).append(";dur=");
+        appendMillis(sb, durations[stage.ordinal()]).append(", ");
+      }
+    }
+    sb.append("total;dur=");
+    return appendMillis(sb, System.nanoTime() - start).toString();
+  }
+
+  /**
+   * @return the stages reached as spans, offset from the start of the request and duration in microseconds
+   */
+  public JsonObject toSpans(String requestId, String route) {
+    JsonArray spans = new JsonArray();
+    for (Stage stage : STAGES) {
+      int i = stage.ordinal();
+      if (offsets[i] >= 0) {
+        spans.add(new JsonObject()
+          .put("name", stage.metric)
+          .put("offset", offsets[i] / 1000)
+          .put("duration", durations[i] / 1000));
+      }
+    }
+    return new JsonObject()
+      .put("requestId", requestId)
+      .put("route", route)
+      .put("duration", (System.nanoTime() - start) / 1000)
+      .put("spans", spans);
+  }
+
+  private static StringBuilder appendMillis(StringBuilder sb, long nanos) {
+    long micros = nanos / 1000;
+    sb.append(micros / 1000).append('.');
+    long fraction = micros % 1000;
+    return sb.append(fraction < 10 ? "00" : fraction < 100 ? "0" : "").append(fraction);
+  }
+}
@@ -0,0 +1,92 @@
+package org.folio.rest.routing;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Instances of the classes implementing the raml interfaces, reused per tenant.
+ *
+ * A cache belongs to one verticle instance and is only used from its event loop, so it is not
+ * thread safe - every event loop gets its own instances. Tenants which have not made a request
+ * for the idle time are dropped, instances implementing {@link AutoCloseable} are closed then.
+ */
+public final class TenantInstanceCache {
+
+  private static final Logger log = LoggerFactory.getLogger(TenantInstanceCache.class);
+
+  private final Map<String, TenantInstances> tenants = new HashMap<>();
+
+  /**
+   * @return the instance of the invoker's class for the tenant, created on first use
+   */
+  public Object get(OperationInvoker invoker, Vertx vertx, String tenantId) throws ReflectiveOperationException {
+    TenantInstances entry = tenants.get(tenantId);
+    if (entry == null) {
+      entry = new TenantInstances();
+      tenants.put(tenantId, entry);
+    }
+    entry.lastAccess = System.currentTimeMillis();
+    Object instance = entry.instances.get(invoker.getImplClass());
+    if (instance == null) {
+      instance = invoker.newInstance(vertx, tenantId);
+      entry.instances.put(invoker.getImplClass(), instance);
+    }
+    return instance;
+  }
+
+  /**
+   * @param idleMillis  time since the last request of a tenant after which its instances are dropped
+   * @return number of tenants evicted
+   */
+  public int evictIdle(long idleMillis) {
+    long idleSince = System.currentTimeMillis() - idleMillis;
+    int evicted = 0;
+    Iterator<Map.Entry<String, TenantInstances>> iter = tenants.entrySet().iterator();
+    while (iter.hasNext()) {
+      Map.Entry<String, TenantInstances> entry = iter.next();
+      if (entry.getValue().lastAccess < idleSince) {
+        iter.remove();
+        entry.getValue().close(entry.getKey());
+        evicted++;
+      }
+    }
+    return evicted;
+  }
+
+  /**
+   * drop the instances of all tenants
+   */
+  public void clear() {
+    for (Map.Entry<String, TenantInstances> entry : tenants.entrySet()) {
+      entry.getValue().close(entry.getKey());
+    }
+    tenants.clear();
+  }
+
+  public int size() {
+    return tenants.size();
+  }
+
+  private static final class TenantInstances {
+    private final Map<Class<?>, Object> instances = new HashMap<>();
+    private long lastAccess;
+
+    private void close(String tenantId) {
+      for (Object instance : instances.values()) {
+        if (instance instanceof AutoCloseable) {
+          try {
+            ((AutoCloseable) instance).close();
+          } catch (Exception e) {
+            log.warn("Failed to close " + instance.getClass().getName() + " of tenant " + tenantId, e);
+          }
+        }
+      }
+      instances.clear();
+    }
+  }
+}
@@ -0,0 +1,342 @@
+package org.folio.rest.utils;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.parsetools.JsonEventType;
+import io.vertx.core.parsetools.JsonParser;
+import io.vertx.core.parsetools.RecordParser;
+import org.folio.rest.routing.BodyValidator;
+
+import javax.validation.ConstraintViolation;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Imports the records of a request body into a table as the body comes in.
+ *
+ * The body is either newline delimited json (one record per line) or a json array of records. Each record
+ * is parsed and validated on its own as a request body of its class would be - read-only properties are
+ * skipped, see {@link BodyValidator} - valid records are inserted in batches of batchSize with one multi row
+ * INSERT each. The request is paused while a batch is written, so a slow database slows down the upload
+ * instead of filling the heap - at most one batch plus the chunk being parsed is held in memory. Invalid
+ * records and failed batches are reported by line (ndjson) or position (array, starting at 1) and do not
+ * stop the import. A single record is not allowed to grow beyond maxRecordSize bytes - an over long line is
+ * reported as an error of its line, a record the parser would have to buffer beyond the limit (a line
+ * without end, a huge array element) fails the import with a {@link RecordTooLargeException}.
+ *
+ * All of it runs on the event loop of the request.
+ */
+public class BulkImport<T> {
+
+  public static final int DEFAULT_BATCH_SIZE = 500;
+  public static final int DEFAULT_MAX_RECORD_SIZE = 1024 * 1024;
+  /** errors reported at most, the counts are always complete */
+  public static final int MAX_REPORTED_ERRORS = 100;
+
+  private final PostgresClient pgClient;
+  private final String tableName;
+  private final BodyValidator validator;
+  private final ObjectReader reader;
+  private final BiConsumer<T, String> idSetter;
+  private final int batchSize;
+  private final int maxRecordSize;
+
+  private final Summary summary = new Summary();
+  private List<T> batch = new ArrayList<>();
+  private List<String> batchIds = new ArrayList<>();
+  private List<Integer> batchLines = new ArrayList<>();
+  private HttpServerRequest request;
+  private SingleEmitter<Summary> emitter;
+  private boolean flushing;
+  private boolean ended;
+  private boolean failed;
+  private int line;
+
+  /**
+   * @param idSetter  sets the id generated for a record
+   * @param maxRecordSize  bytes a single record may take at most
+   */
+  public BulkImport(PostgresClient pgClient, String tableName, Class<T> clazz, BiConsumer<T, String> idSetter, int batchSize,
+                    int maxRecordSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("batchSize must be at least 1: " + batchSize);
+    }
+    if (maxRecordSize < 1) {
+      throw new IllegalArgumentException("maxRecordSize must be at least 1: " + maxRecordSize);
+    }
+    this.pgClient = pgClient;
+    this.tableName = tableName;
+    this.validator = BodyValidator.forClass(clazz);
+    this.reader = validator.getReader();
+    this.idSetter = idSetter;
+    this.batchSize = batchSize;
+    this.maxRecordSize = maxRecordSize;
+  }
+
+  /**
+   * Reads the body of the request, which may be paused, to its end. An import runs once.
+   *
+   * @param jsonArray  true if the body is a json array, false if it is newline delimited json
+   * @return the outcome, fails only if the body can't be read or is no json array when expected to be
+   */
+  public Single<Summary> run(HttpServerRequest request, boolean jsonArray) {
+    return Single.create(emitter -> {
+      this.request = request;
+      this.emitter = emitter;
+      Handler handler = jsonArray ? new ArrayHandler() : new LineHandler();
+      request.handler(buffer -> {
+        // the rest of the body is drained unread once the import has failed
+        if (!failed) {
+          handler.handle(buffer);
+        }
+      });
+      request.exceptionHandler(this::fail);
+      request.endHandler(v -> {
+        if (failed) {
+          return;
+        }
+        handler.end();
+        ended = true;
+        next();
+      });
+      request.resume();
+    });
+  }
+
+  private void record(int line, String json) {
+    try {
+      add(line, reader.readValue(json));
+    } catch (Exception e) {
+      error(line, e.getMessage());
+    }
+  }
+
+  private void add(int line, T entity) {
+    Set<ConstraintViolation<Object>> violations = validator.validate(entity);
+    if (!violations.isEmpty()) {
+      StringBuilder sb = new StringBuilder();
+      for (ConstraintViolation<Object> violation : violations) {
+        if (sb.length() > 0) {
+          sb.append("; ");
+        }
+        sb.append(violation.getPropertyPath()).append(' ').append(violation.getMessage());
+      }
+      error(line, sb.toString());
+      return;
+    }
+    String id = UUID.randomUUID().toString();
+    idSetter.accept(entity, id);
+    batch.add(entity);
+    batchIds.add(id);
+    batchLines.add(line);
+    if (batch.size() >= batchSize && !flushing) {
+      flush();
+    }
+  }
+
+  private void flush() {
+    flushing = true;
+    // records still in the chunk being parsed go to the next batch
+    request.pause();
+    List<T> entities = batch;
+    List<String> ids = batchIds;
+    List<Integer> lines = batchLines;
+    batch = new ArrayList<>();
+    batchIds = new ArrayList<>();
+    batchLines = new ArrayList<>();
+    pgClient.saveBatch(tableName, ids, entities).subscribe(inserted -> {
+      summary.imported += inserted;
+      flushing = false;
+      next();
+    }, err -> {
+      for (Integer l : lines) {
+        error(l, err.getMessage());
+      }
+      flushing = false;
+      next();
+    });
+  }
+
+  private void next() {
+    if (flushing || emitter.isDisposed()) {
+      return;
+    }
+    if (batch.size() >= batchSize || (ended && !batch.isEmpty())) {
+      flush();
+    } else if (ended) {
+      emitter.onSuccess(summary);
+    } else {
+      request.resume();
+    }
+  }
+
+  private void error(int line, String message) {
+    summary.failed++;
+    if (summary.errors.size() < MAX_REPORTED_ERRORS) {
+      summary.errors.add(new LineError(line, message));
+    }
+  }
+
+  private void fail(Throwable err) {
+    failed = true;
+    if (!emitter.isDisposed()) {
+      emitter.onError(err);
+    }
+  }
+
+  private interface Handler {
+    void handle(Buffer buffer);
+
+    void end();
+  }
+
+  /**
+   * one record per line, blank lines are skipped
+   */
+  private final class LineHandler implements Handler {
+    private final RecordParser parser = RecordParser.newDelimited("\n", this::line);
+    // bytes held by the parser for the line not yet terminated
+    private long pending;
+
+    private void line(Buffer buffer) {
+      line++;
+      if (buffer.length() > maxRecordSize) {
+        error(line, "Record too large: " + buffer.length() + " bytes, at most " + maxRecordSize + " allowed");
+        return;
+      }
+      String json = buffer.toString(StandardCharsets.UTF_8.name()).trim();
+      if (!json.isEmpty()) {
+        record(line, json);
+      }
+    }
+
+    @Override
+    public void handle(Buffer buffer) {
+      int last = lastNewline(buffer);
+      pending = last < 0 ? pending + buffer.length() : buffer.length() - last - 1;
+      if (pending > maxRecordSize) {
+        fail(new RecordTooLargeException(line + 1, maxRecordSize));
+        return;
+      }
+      parser.handle(buffer);
+    }
+
+    private int lastNewline(Buffer buffer) {
+      for (int i = buffer.length() - 1; i >= 0; i--) {
+        if (buffer.getByte(i) == '\n') {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    public void end() {
+      // the last line may not be terminated
+      parser.handle(Buffer.buffer("\n"));
+    }
+  }
+
+  /**
+   * the elements of a json array, a single object is taken as an array of one
+   */
+  private final class ArrayHandler implements Handler {
+    private final JsonParser parser = JsonParser.newParser();
+    // bytes read since the last element was complete, an upper bound of what the parser buffers
+    private long pending;
+
+    private ArrayHandler() {
+      parser.objectValueMode();
+      parser.exceptionHandler(BulkImport.this::fail);
+      parser.handler(event -> {
+        if (event.type() == JsonEventType.VALUE) {
+          pending = 0;
+          line++;
+          Object value = event.value();
+          if (value instanceof JsonObject) {
+            try {
+              // read again from json, converting the map would not skip the read-only properties
+              add(line, reader.readValue(((JsonObject) value).encode()));
+            } catch (Exception e) {
+              error(line, e.getMessage());
+            }
+          } else {
+            error(line, "Not an object: " + value);
+          }
+        }
+      });
+    }
+
+    @Override
+    public void handle(Buffer buffer) {
+      if (pending > maxRecordSize) {
+        // the element begun in earlier chunks has not completed within the limit
+        fail(new RecordTooLargeException(line + 1, maxRecordSize));
+        return;
+      }
+      pending += buffer.length();
+      parser.handle(buffer);
+    }
+
+    @Override
+    public void end() {
+      parser.end();
+    }
+  }
+
+  /**
+   * a record outgrew the limit before it was complete, the import stops
+   */
+  public static final class RecordTooLargeException extends RuntimeException {
+    private RecordTooLargeException(int line, int maxRecordSize) {
+      super("Record " + line + " is larger than " + maxRecordSize + " bytes");
+    }
+  }
+
+  public static final class Summary {
+    private int imported;
+    private int failed;
+    private final List<LineError> errors = new ArrayList<>();
+
+    public int getImported() {
+      return imported;
+    }
+
+    public int getFailed() {
+      return failed;
+    }
+
+    /**
+     * @return the first {@link #MAX_REPORTED_ERRORS} errors
+     */
+    public List<LineError> getErrors() {
+      return errors;
+    }
+  }
+
+  public static final class LineError {
+    private final int line;
+    private final String message;
+
+    private LineError(int line, String message) {
+      this.line = line;
+      this.message = message;
+    }
+
+    public int getLine() {
+      return line;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package org.folio.rest.utils;
+
+/**
+ * Strong entity tags of record versions and the matching of conditional request headers against them
+ */
+public final class ETags {
+
+  public static final String ETAG = "ETag";
+  public static final String IF_MATCH = "If-Match";
+  public static final String IF_NONE_MATCH = "If-None-Match";
+
+  private ETags() {
+  }
+
+  /**
+   * @return the strong entity tag of the version
+   */
+  public static String of(String version) {
+    return '"' + version + '"';
+  }
+
+  /**
+   * @param header  If-None-Match or If-Match value - "*" or a comma separated list of entity tags, may be null
+   * @return true if the header lists the entity tag or is "*" - weak tags match their strong counterpart
+   */
+  public static boolean matches(String header, String etag) {
+    if (header == null || etag == null) {
+      return false;
+    }
+    for (String tag : header.split(",")) {
+      tag = tag.trim();
+      if ("*".equals(tag)) {
+        return true;
+      }
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if (tag.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param header  If-Match value, a comma separated list of strong entity tags
+   * @return the versions the entity tags are made of, "*" is not a version
+   */
+  public static String[] versions(String header) {
+    String[] tags = header.split(",");
+    String[] versions = new String[tags.length];
+    for (int i = 0; i < tags.length; i++) {
+      String tag = tags[i].trim();
+      versions[i] = tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"") ? tag.substring(1, tag.length() - 1) : tag;
+    }
+    return versions;
+  }
+}
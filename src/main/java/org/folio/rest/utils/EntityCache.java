@@ -0,0 +1,247 @@
+package org.folio.rest.utils;
+
+import io.vertx.core.json.JsonObject;
+import org.folio.rest.routing.RequestMetrics;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Read-through cache of serialized entities and their versions by id, one per tenant and name shared by
+ * all event loops.
+ *
+ * At most maxSize entries are kept, the least recently used are dropped first, and an entry expires ttlMillis
+ * after it has been put. Writers {@link #invalidate(String)} the ids they change once the change is done. A
+ * reader which missed takes a {@link #stamp()} before reading from the database and passes it to
+ * {@link #put(String, byte[], String, long)}, the read is not cached if anything was invalidated in between - it may
+ * have read what has just been changed.
+ *
+ * The cache is local to this process, with several processes sharing a database an entry changed by another
+ * one is served until it expires.
+ *
+ * The caches of the tenants which have not been used for a while are dropped with
+ * {@link #removeIdleCaches(long)}, so the caches are bounded by the active tenants - users look their cache up
+ * with {@link #forTenant(String, String, int, long)} each time rather than holding on to it.
+ */
+public final class EntityCache {
+
+  public static final int DEFAULT_MAX_SIZE = 10000;
+  public static final long DEFAULT_TTL = 60 * 1000L;
+
+  private static final ConcurrentMap<String, EntityCache> CACHES = new ConcurrentHashMap<>();
+
+  private final String name;
+  private final int maxSize;
+  private final long ttlMillis;
+  private final Map<String, Entry> entries;
+  private long invalidations;
+  private long hits;
+  private long misses;
+  private long evictions;
+  private volatile long lastAccess = System.currentTimeMillis();
+
+  private EntityCache(String name, int maxSize, long ttlMillis) {
+    this.name = name;
+    this.maxSize = maxSize;
+    this.ttlMillis = ttlMillis;
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        if (size() > EntityCache.this.maxSize) {
+          evictions++;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * @return the cache of the tenant, created with maxSize and ttlMillis on first use
+   */
+  public static EntityCache forTenant(String tenantId, String name, int maxSize, long ttlMillis) {
+    String key = (tenantId == null ? "" : tenantId) + '/' + name;
+    EntityCache cache = CACHES.computeIfAbsent(key, k -> new EntityCache(k, maxSize, ttlMillis));
+    cache.lastAccess = System.currentTimeMillis();
+    return cache;
+  }
+
+  /**
+   * Forgets the caches which have not been looked up for the given time.
+   * @param idleMillis  time since the last lookup after which a cache is dropped
+   * @return number of caches dropped
+   */
+  public static int removeIdleCaches(long idleMillis) {
+    long idleSince = System.currentTimeMillis() - idleMillis;
+    int removed = 0;
+    Iterator<EntityCache> iter = CACHES.values().iterator();
+    while (iter.hasNext()) {
+      EntityCache cache = iter.next();
+      if (cache.lastAccess < idleSince && CACHES.remove(cache.name, cache)) {
+        removed++;
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * @return hits, misses, hitRatio, evictions, invalidations and size of the caches of all tenants by tenant/name
+   */
+  public static JsonObject getAllStats() {
+    JsonObject stats = new JsonObject();
+    CACHES.forEach((key, cache) -> stats.put(key, cache.getStats()));
+    return stats;
+  }
+
+  /**
+   * drops the expired entries of the caches of all tenants, run periodically
+   */
+  public static void evictAllExpired() {
+    CACHES.values().forEach(EntityCache::evictExpired);
+  }
+
+  /**
+   * prometheus counters and size of the caches of all tenants, labelled by tenant/name
+   */
+  public static void writePrometheus(StringBuilder sb) {
+    sb.append("# HELP entity_cache_hits_total Lookups served from the entity cache\n")
+      .append("# TYPE entity_cache_hits_total counter\n");
+    CACHES.forEach((key, cache) -> cache.writeSample(sb, "entity_cache_hits_total", key, c -> c.hits));
+    sb.append("# HELP entity_cache_misses_total Lookups not served from the entity cache\n")
+      .append("# TYPE entity_cache_misses_total counter\n");
+    CACHES.forEach((key, cache) -> cache.writeSample(sb, "entity_cache_misses_total", key, c -> c.misses));
+    sb.append("# HELP entity_cache_evictions_total Entries dropped as the cache was full or they expired\n")
+      .append("# TYPE entity_cache_evictions_total counter\n");
+    CACHES.forEach((key, cache) -> cache.writeSample(sb, "entity_cache_evictions_total", key, c -> c.evictions));
+    sb.append("# HELP entity_cache_invalidations_total Invalidations by writers\n")
+      .append("# TYPE entity_cache_invalidations_total counter\n");
+    CACHES.forEach((key, cache) -> cache.writeSample(sb, "entity_cache_invalidations_total", key, c -> c.invalidations));
+    sb.append("# HELP entity_cache_size Entries in the entity cache\n")
+      .append("# TYPE entity_cache_size gauge\n");
+    CACHES.forEach((key, cache) -> cache.writeSample(sb, "entity_cache_size", key, c -> c.entries.size()));
+  }
+
+  private synchronized void writeSample(StringBuilder sb, String metric, String key, ToLongFunction<EntityCache> value) {
+    sb.append(metric).append("{cache=\"");
+    RequestMetrics.escape(sb, key);
+    sb.append("\"} ").append(value.applyAsLong(this)).append('\n');
+  }
+
+  /**
+   * @return the serialized entity and its version, null if it is not cached or has expired
+   */
+  public synchronized Entry get(String id) {
+    Entry entry = entries.get(id);
+    if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+      entries.remove(id);
+      entry = null;
+    }
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry;
+  }
+
+  /**
+   * @return stamp to pass to {@link #put(String, byte[], String, long)}, taken before reading the entity
+   */
+  public synchronized long stamp() {
+    return invalidations;
+  }
+
+  /**
+   * caches the entity unless an entity has been invalidated since the stamp was taken
+   */
+  public synchronized void put(String id, byte[] bytes, String version, long stamp) {
+    if (stamp == invalidations) {
+      entries.put(id, new Entry(bytes, version, System.currentTimeMillis() + ttlMillis));
+    }
+  }
+
+  public synchronized void invalidate(String id) {
+    invalidations++;
+    entries.remove(id);
+  }
+
+  public synchronized void invalidateAll(Iterable<String> ids) {
+    invalidations++;
+    for (String id : ids) {
+      entries.remove(id);
+    }
+  }
+
+  /**
+   * invalidates the ids whatever the case they are cached in, for writers which match ids case insensitively -
+   * goes through all entries
+   */
+  public synchronized void invalidateAllIgnoreCase(Collection<String> ids) {
+    invalidations++;
+    Set<String> lowerCase = new HashSet<>();
+    for (String id : ids) {
+      lowerCase.add(id.toLowerCase(Locale.ROOT));
+    }
+    entries.keySet().removeIf(id -> lowerCase.contains(id.toLowerCase(Locale.ROOT)));
+  }
+
+  /**
+   * drops the expired entries
+   */
+  public synchronized void evictExpired() {
+    long now = System.currentTimeMillis();
+    Iterator<Entry> iter = entries.values().iterator();
+    while (iter.hasNext()) {
+      if (iter.next().expiresAt < now) {
+        iter.remove();
+        evictions++;
+      }
+    }
+  }
+
+  public synchronized JsonObject getStats() {
+    long lookups = hits + misses;
+    return new JsonObject()
+      .put("hits", hits)
+      .put("misses", misses)
+      .put("hitRatio", lookups == 0 ? 0d : (double) hits / lookups)
+      .put("evictions", evictions)
+      .put("invalidations", invalidations)
+      .put("size", entries.size())
+      .put("maxSize", maxSize)
+      .put("ttl", ttlMillis);
+  }
+
+  @Override
+  public String toString() {
+    return "EntityCache[" + name + "]" + getStats().encode();
+  }
+
+  public static final class Entry {
+    private final byte[] bytes;
+    private final String version;
+    private final long expiresAt;
+
+    private Entry(byte[] bytes, String version, long expiresAt) {
+      this.bytes = bytes;
+      this.version = version;
+      this.expiresAt = expiresAt;
+    }
+
+    public byte[] getBytes() {
+      return bytes;
+    }
+
+    public String getVersion() {
+      return version;
+    }
+  }
+}
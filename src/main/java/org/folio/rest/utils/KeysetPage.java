@@ -0,0 +1,28 @@
+package org.folio.rest.utils;
+
+import java.util.List;
+
+/**
+ * Records of one page of a {@link KeysetQuery}
+ */
+public final class KeysetPage<T> {
+
+  private final List<T> records;
+  private final String next;
+
+  public KeysetPage(List<T> records, String next) {
+    this.records = records;
+    this.next = next;
+  }
+
+  public List<T> getRecords() {
+    return records;
+  }
+
+  /**
+   * @return the cursor of the next page, null if this is the last page
+   */
+  public String getNext() {
+    return next;
+  }
+}
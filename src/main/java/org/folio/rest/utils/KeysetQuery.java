@@ -0,0 +1,189 @@
+package org.folio.rest.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.vertx.core.json.JsonArray;
+import org.folio.rest.tools.utils.ObjectMapperTool;
+import org.z3950.zing.cql.CQLNode;
+import org.z3950.zing.cql.CQLParser;
+import org.z3950.zing.cql.CQLSortNode;
+import org.z3950.zing.cql.Modifier;
+import org.z3950.zing.cql.ModifierSet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * A page of a cql query addressed by the sort key of the last record of the previous page instead of an
+ * offset - the page is read with <code>WHERE (key, _id) &gt; (last key, last _id) ORDER BY key, _id LIMIT n</code>
+ * so the database seeks straight to it, every page costs the same however deep it is.
+ *
+ * The records are ordered by the single sortBy field of the query, if any, then by id which makes the order
+ * total. A page only costs the same however deep it is if an index covers the order, (COALESCE(jsonb-&gt;'field',
+ * 'null'::jsonb), _id) for a sort field - sorting is therefore limited to the fields the caller has such an
+ * index for, see schema.json, otherwise every page sorts all matching records.
+ *
+ * The cursor of the next page is an opaque token holding the last key and a hash of the query, it is only
+ * valid for the same query. {@link #FIRST_PAGE} asks for the first page.
+ */
+public final class KeysetQuery {
+
+  public static final String FIRST_PAGE = "*";
+
+  private static final ObjectMapper MAPPER = ObjectMapperTool.getMapper();
+  private static final Pattern FIELD = Pattern.compile("[A-Za-z0-9_]+(\\.[A-Za-z0-9_]+)*");
+  private static final String ID_FIELD = "_id";
+  private static final String ID = "id";
+
+  private final String query;
+  private final String[] sortPath;
+  private final boolean descending;
+  private final String where;
+  private final JsonArray params = new JsonArray();
+  private final String orderBy;
+  private final int limit;
+
+  /**
+   * @param table  the table the query runs on, its jsonb column is referenced as table.jsonb
+   * @param query  cql query with at most one sortBy field, may be null
+   * @param cursor  {@link #FIRST_PAGE} or the next cursor of the previous page of the same query
+   * @param limit  records per page
+   * @param sortFields  fields the query may be sorted by, those indexed for it - id is always allowed
+   * @throws IllegalArgumentException if the cursor is not one of this query or the query is sorted by more than one
+   *                                  field or by a field which is not sortable
+   * @throws Exception if the query can't be parsed or translated
+   */
+  public KeysetQuery(String table, String query, String cursor, int limit, Set<String> sortFields) throws Exception {
+    this.query = query == null ? "" : query;
+    this.limit = limit;
+    CQLNode filter = null;
+    String sortField = null;
+    boolean desc = false;
+    if (!this.query.trim().isEmpty()) {
+      CQLNode node = new CQLParser().parse(this.query);
+      if (node instanceof CQLSortNode) {
+        List<ModifierSet> sortIndexes = ((CQLSortNode) node).getSortIndexes();
+        if (sortIndexes.size() > 1) {
+          throw new IllegalArgumentException("Cursor paging supports sorting by one field only: " + this.query);
+        }
+        sortField = sortIndexes.get(0).getBase();
+        desc = isDescending(sortIndexes.get(0).getModifiers());
+        node = ((CQLSortNode) node).getSubtree();
+      }
+      filter = node;
+    }
+    if (sortField != null && !FIELD.matcher(sortField).matches()) {
+      throw new IllegalArgumentException("Invalid sort field: " + sortField);
+    }
+    if (sortField != null && !ID.equals(sortField) && !sortFields.contains(sortField)) {
+      throw new IllegalArgumentException("Cursor paging can't sort by " + sortField + ", only by id or " + sortFields);
+    }
+    this.sortPath = sortField == null || ID.equals(sortField) ? null : sortField.split("\\.");
+    this.descending = desc;
+
+    String jsonb = table + ".jsonb";
+    StringBuilder condition = new StringBuilder();
+    if (filter != null) {
+      condition.append('(').append(PgQuery.translator(table).cql2pgJson(filter.toCQL())).append(')');
+    }
+    String key = sortPath == null ? null : sortKey(jsonb);
+    if (!FIRST_PAGE.equals(cursor)) {
+      if (condition.length() > 0) {
+        condition.append(" AND ");
+      }
+      condition.append(seek(cursor, key));
+    }
+    this.where = condition.length() == 0 ? "" : "WHERE " + condition;
+    String direction = descending ? " DESC" : "";
+    this.orderBy = "ORDER BY " + (key == null ? "" : key + direction + ", ") + ID_FIELD + direction;
+  }
+
+  private static boolean isDescending(List<Modifier> modifiers) {
+    for (Modifier modifier : modifiers) {
+      if ("sort.descending".equalsIgnoreCase(modifier.getType())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * jsonb of the sort field, a missing field is taken as json null so that every record has a key
+   */
+  private String sortKey(String jsonb) {
+    StringBuilder sb = new StringBuilder("COALESCE(").append(jsonb);
+    for (String part : sortPath) {
+      sb.append("->'").append(part).append('\'');
+    }
+    return sb.append(", 'null'::jsonb)").toString();
+  }
+
+  private String seek(String cursor, String key) {
+    JsonNode token;
+    try {
+      token = MAPPER.readTree(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+    } catch (Exception e) {
+      throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+    }
+    if (token == null || !queryHash().equals(token.path("q").asText()) || !token.hasNonNull(ID)
+      || (key != null && !token.has("k"))) {
+      throw new IllegalArgumentException("Cursor does not belong to this query: " + cursor);
+    }
+    String op = descending ? " < " : " > ";
+    if (key == null) {
+      params.add(token.get(ID).asText());
+      return ID_FIELD + op + "?::uuid";
+    }
+    params.add(token.get("k").toString()).add(token.get(ID).asText());
+    return "(" + key + ", " + ID_FIELD + ")" + op + "(?::jsonb, ?::uuid)";
+  }
+
+  /**
+   * @param last  the last record of the page
+   * @return the cursor of the page following the record
+   */
+  public String nextCursor(Object last) {
+    JsonNode record = MAPPER.valueToTree(last);
+    ObjectNode token = MAPPER.createObjectNode();
+    token.put("q", queryHash());
+    token.put(ID, record.path(ID).asText());
+    if (sortPath != null) {
+      JsonNode value = record;
+      for (String part : sortPath) {
+        value = value.path(part);
+      }
+      token.set("k", value.isMissingNode() ? token.nullNode() : value);
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(token.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  private String queryHash() {
+    return Integer.toHexString(query.hashCode());
+  }
+
+  /**
+   * @return WHERE clause with the filter of the query and the position of the page, empty if there is neither
+   */
+  public String getWhere() {
+    return where;
+  }
+
+  /**
+   * @return the parameters of the WHERE clause
+   */
+  public JsonArray getParams() {
+    return params;
+  }
+
+  public String getOrderBy() {
+    return orderBy;
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+}
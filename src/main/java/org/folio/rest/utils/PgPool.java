@@ -0,0 +1,238 @@
+package org.folio.rest.utils;
+
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.ext.asyncsql.AsyncSQLClient;
+import io.vertx.reactivex.ext.sql.SQLConnection;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Bounded pool of connections of one tenant schema.
+ *
+ * At most maxSize connections are open at a time, released connections are kept open and handed to
+ * the next caller. Callers beyond maxSize wait in a queue of at most maxWaitQueueSize entries (-1 for
+ * unbounded), once that is full {@link #getConnection()} fails right away with {@link PoolExhaustedException}
+ * instead of piling up work. The pool is shared by all event loops, a connection is always handed over on
+ * the vert.x context of the caller which asked for it.
+ */
+public class PgPool {
+
+  private final AsyncSQLClient client;
+  private final int maxSize;
+  private final int maxWaitQueueSize;
+  private final Deque<SQLConnection> idle = new ArrayDeque<>();
+  private final Deque<Waiter> waiters = new ArrayDeque<>();
+  private int size;
+  private int active;
+  private boolean closed;
+
+  public PgPool(AsyncSQLClient client, int maxSize, int maxWaitQueueSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("maxSize must be at least 1: " + maxSize);
+    }
+    this.client = client;
+    this.maxSize = maxSize;
+    this.maxWaitQueueSize = maxWaitQueueSize;
+  }
+
+  /**
+   * @return a connection which must be given back with {@link #release(SQLConnection)}
+   */
+  public Single<SQLConnection> getConnection() {
+    return Single.create(emitter -> {
+      Waiter waiter = new Waiter(emitter, Vertx.currentContext());
+      SQLConnection conn;
+      synchronized (this) {
+        if (closed) {
+          emitter.onError(new IllegalStateException("Pool is closed"));
+          return;
+        }
+        conn = idle.poll();
+        if (conn != null) {
+          active++;
+        } else if (size < maxSize) {
+          size++;
+          active++;
+        } else if (maxWaitQueueSize < 0 || waiters.size() < maxWaitQueueSize) {
+          waiters.add(waiter);
+          emitter.setCancellable(() -> removeWaiter(waiter));
+          return;
+        } else {
+          emitter.onError(new PoolExhaustedException(maxSize, maxWaitQueueSize));
+          return;
+        }
+      }
+      if (conn != null) {
+        waiter.complete(conn);
+      } else {
+        open(waiter);
+      }
+    });
+  }
+
+  private void open(Waiter waiter) {
+    client.rxGetConnection().subscribe(waiter::complete, err -> {
+      synchronized (this) {
+        size--;
+        active--;
+      }
+      waiter.fail(err);
+      // the slot is free again, let a waiting caller try to open a connection
+      openForNextWaiter();
+    });
+  }
+
+  private void openForNextWaiter() {
+    Waiter next;
+    synchronized (this) {
+      if (closed || size >= maxSize || waiters.isEmpty()) {
+        return;
+      }
+      next = waiters.poll();
+      size++;
+      active++;
+    }
+    open(next);
+  }
+
+  private synchronized void removeWaiter(Waiter waiter) {
+    waiters.remove(waiter);
+  }
+
+  /**
+   * Give a connection back to the pool
+   */
+  public void release(SQLConnection conn) {
+    release(conn, false);
+  }
+
+  /**
+   * Give a connection back to the pool
+   * @param broken  true if the connection must not be reused, it is closed and its slot freed
+   */
+  public void release(SQLConnection conn, boolean broken) {
+    Waiter next = null;
+    boolean close = broken;
+    synchronized (this) {
+      active--;
+      if (closed || broken) {
+        size--;
+        close = true;
+      } else {
+        while (!waiters.isEmpty() && next == null) {
+          Waiter w = waiters.poll();
+          if (!w.emitter.isDisposed()) {
+            next = w;
+          }
+        }
+        if (next != null) {
+          active++;
+        } else {
+          idle.push(conn);
+        }
+      }
+    }
+    if (close) {
+      conn.close();
+      openForNextWaiter();
+    } else if (next != null) {
+      next.complete(conn);
+    }
+  }
+
+  /**
+   * Closes the idle connections, connections in use are closed when they are released
+   */
+  public void close() {
+    Deque<SQLConnection> toClose;
+    Deque<Waiter> toFail;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      size -= idle.size();
+      toClose = new ArrayDeque<>(idle);
+      idle.clear();
+      toFail = new ArrayDeque<>(waiters);
+      waiters.clear();
+    }
+    toClose.forEach(SQLConnection::close);
+    toFail.forEach(w -> w.fail(new IllegalStateException("Pool is closed")));
+    client.close();
+  }
+
+  /**
+   * @return active - connections in use, idle - open connections ready to be used, waiting - callers
+   *   queued for a connection, size - open connections, maxSize and maxWaitQueueSize as configured
+   */
+  public synchronized JsonObject getStats() {
+    return new JsonObject()
+      .put("active", active)
+      .put("idle", idle.size())
+      .put("waiting", waiters.size())
+      .put("size", size)
+      .put("maxSize", maxSize)
+      .put("maxWaitQueueSize", maxWaitQueueSize);
+  }
+
+  private final class Waiter {
+    private final SingleEmitter<SQLConnection> emitter;
+    private final Context context;
+
+    private Waiter(SingleEmitter<SQLConnection> emitter, Context context) {
+      this.emitter = emitter;
+      this.context = context;
+    }
+
+    private void complete(SQLConnection conn) {
+      if (context == null) {
+        deliver(conn);
+      } else {
+        context.runOnContext(v -> deliver(conn));
+      }
+    }
+
+    private void deliver(SQLConnection conn) {
+      if (emitter.isDisposed()) {
+        // nobody is going to use it - put it back
+        release(conn);
+      } else {
+        emitter.onSuccess(conn);
+      }
+    }
+
+    private void fail(Throwable err) {
+      if (context == null) {
+        failNow(err);
+      } else {
+        context.runOnContext(v -> failNow(err));
+      }
+    }
+
+    private void failNow(Throwable err) {
+      if (!emitter.isDisposed()) {
+        emitter.onError(err);
+      }
+    }
+  }
+
+  /**
+   * Thrown when all connections are in use and the wait queue is full
+   */
+  public static class PoolExhaustedException extends RuntimeException {
+    public PoolExhaustedException(int maxSize, int maxWaitQueueSize) {
+      super("Connection pool exhausted: " + maxSize + " connections in use and " + maxWaitQueueSize + " waiting");
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "PgPool" + getStats().encode();
+  }
+}
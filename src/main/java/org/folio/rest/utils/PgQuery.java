@@ -1,21 +1,45 @@
 package org.folio.rest.utils;
 
+import io.vertx.core.json.JsonObject;
 import org.folio.rest.persist.Criteria.Limit;
 import org.folio.rest.persist.Criteria.Offset;
 import org.folio.rest.persist.cql.CQLWrapper;
+import org.z3950.zing.cql.CQLNode;
+import org.z3950.zing.cql.CQLParseException;
+import org.z3950.zing.cql.CQLParser;
+import org.z3950.zing.cql.CQLSortNode;
 import org.z3950.zing.cql.cql2pgjson.CQL2PgJSON;
 import org.z3950.zing.cql.cql2pgjson.FieldException;
+import org.z3950.zing.cql.cql2pgjson.QueryValidationException;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cql query on a table translated to sql.
+ *
+ * The translation of a (table, query) pair does not depend on limit and offset, it is kept in a bounded
+ * LRU cache shared by all threads so repeated queries are parsed and translated only once. The CQL2PgJSON
+ * translator of a table is shared as well.
+ */
+public class PgQuery {
+    public static final int DEFAULT_CACHE_SIZE = 1000;
 
-import java.util.Arrays;
-import java.util.List;
+    private static final ConcurrentMap<String, CQL2PgJSON> TRANSLATORS = new ConcurrentHashMap<>();
+    private static final TranslationCache CACHE = new TranslationCache(DEFAULT_CACHE_SIZE);
 
-public class PgQuery {
     private final String[] fields;
     private final String table;
     private final String query;
     private final int offset;
     private final int limit;
-    private final CQLWrapper cql;
+    private final Translation translation;
+    private CQLWrapper cql;
 
     private PgQuery(PgQueryBuilder builder) {
         this.fields = builder.fields;
@@ -23,7 +47,7 @@ public class PgQuery {
         this.query = builder.query;
         this.offset = builder.offset;
         this.limit = builder.limit;
-        this.cql = builder.cql;
+        this.translation = builder.translation;
     }
 
     public String[] getFields() {
@@ -46,17 +70,97 @@ public class PgQuery {
         return this.limit;
     }
 
-    public CQLWrapper getCql() {
+    /**
+     * @return the query as CQLWrapper, which translates it again whenever turned into sql - prefer {@link #getSql()}
+     */
+    public CQLWrapper getCql() throws FieldException {
+        if (this.cql == null) {
+            this.cql = new CQLWrapper(translator(this.table), this.query).setOffset(new Offset(this.offset));
+            if (this.limit >= 0) {
+                this.cql.setLimit(new Limit(this.limit));
+            }
+        }
         return this.cql;
     }
 
+    /**
+     * @return WHERE and ORDER BY of the query followed by LIMIT and OFFSET - what follows FROM table in the select
+     */
+    public String getSql() {
+        StringBuilder sql = new StringBuilder(this.translation.where);
+        if (this.limit >= 0) {
+            sql.append(" LIMIT ").append(this.limit);
+        }
+        return sql.append(" OFFSET ").append(this.offset).toString();
+    }
+
+    /**
+     * @return the search condition of the query without sorting and paging, e.g. for counting - empty if there is none
+     */
+    public String getFilter() {
+        return this.translation.filter;
+    }
+
+    /**
+     * @return hits, misses, size and maxSize of the translation cache
+     */
+    public static JsonObject getCacheStats() {
+        return CACHE.getStats();
+    }
+
+    /**
+     * prometheus counters and size of the translation cache
+     */
+    public static void writePrometheus(StringBuilder sb) {
+        JsonObject stats = CACHE.getStats();
+        sb.append("# HELP cql_translation_cache_hits_total Queries whose translation was cached\n")
+            .append("# TYPE cql_translation_cache_hits_total counter\n")
+            .append("cql_translation_cache_hits_total ").append(stats.getLong("hits")).append('\n')
+            .append("# HELP cql_translation_cache_misses_total Queries translated\n")
+            .append("# TYPE cql_translation_cache_misses_total counter\n")
+            .append("cql_translation_cache_misses_total ").append(stats.getLong("misses")).append('\n')
+            .append("# HELP cql_translation_cache_size Translations cached\n")
+            .append("# TYPE cql_translation_cache_size gauge\n")
+            .append("cql_translation_cache_size ").append(stats.getInteger("size")).append('\n');
+    }
+
+    /**
+     * @return the translator of cql queries on the jsonb column of the table, shared
+     */
+    static CQL2PgJSON translator(String table) throws FieldException {
+        CQL2PgJSON translator = TRANSLATORS.get(table);
+        if (translator == null) {
+            translator = new CQL2PgJSON(Collections.singletonList(table + ".jsonb"));
+            CQL2PgJSON existing = TRANSLATORS.putIfAbsent(table, translator);
+            if (existing != null) {
+                translator = existing;
+            }
+        }
+        return translator;
+    }
+
+    private static Translation translate(String table, String query)
+        throws QueryValidationException, CQLParseException, IOException {
+        if (query == null || query.trim().isEmpty()) {
+            return Translation.NONE;
+        }
+        CQL2PgJSON translator = translator(table);
+        CQLNode node = new CQLParser().parse(query);
+        String where = "WHERE " + translator.cql2pgJson(query);
+        if (node instanceof CQLSortNode) {
+            node = ((CQLSortNode) node).getSubtree();
+        }
+        return new Translation(where, translator.cql2pgJson(node.toCQL()));
+    }
+
     public static class PgQueryBuilder {
         private final String[] fields;
         private final String table;
         private String query = null;
         private int offset = 0;
-        private int limit = 0;
-        private CQLWrapper cql;
+        // no limit unless set
+        private int limit = -1;
+        private Translation translation;
 
         public PgQueryBuilder(String[] fields, String table) {
             this.fields = fields;
@@ -78,13 +182,69 @@ public class PgQuery {
             return this;
         }
 
-        public PgQuery build() throws FieldException {
-            List<String> jsonbFields = Arrays.asList(this.table + ".jsonb");
-            CQL2PgJSON cql2PgJson = new CQL2PgJSON(jsonbFields);
-            this.cql = new CQLWrapper(cql2PgJson, this.query)
-                .setLimit(new Limit(this.limit))
-                .setOffset(new Offset(this.offset));
+        public PgQuery build() throws FieldException, QueryValidationException, CQLParseException, IOException {
+            String key = this.table + '\u0000' + (this.query == null ? "" : this.query);
+            this.translation = CACHE.get(key);
+            if (this.translation == null) {
+                // two threads missing at once both translate, the outcome is the same
+                this.translation = translate(this.table, this.query);
+                CACHE.put(key, this.translation);
+            }
             return new PgQuery(this);
         }
     }
+
+    private static final class Translation {
+        private static final Translation NONE = new Translation("", "");
+
+        private final String where;
+        private final String filter;
+
+        private Translation(String where, String filter) {
+            this.where = where;
+            this.filter = filter;
+        }
+    }
+
+    private static final class TranslationCache {
+        private final int maxSize;
+        private final Map<String, Translation> entries;
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+
+        private TranslationCache(int maxSize) {
+            this.maxSize = maxSize;
+            this.entries = new LinkedHashMap<String, Translation>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Translation> eldest) {
+                    return size() > TranslationCache.this.maxSize;
+                }
+            };
+        }
+
+        private Translation get(String key) {
+            Translation translation;
+            synchronized (this) {
+                translation = entries.get(key);
+            }
+            (translation == null ? misses : hits).incrementAndGet();
+            return translation;
+        }
+
+        private synchronized void put(String key, Translation translation) {
+            entries.put(key, translation);
+        }
+
+        private JsonObject getStats() {
+            int size;
+            synchronized (this) {
+                size = entries.size();
+            }
+            return new JsonObject()
+                .put("hits", hits.get())
+                .put("misses", misses.get())
+                .put("size", size)
+                .put("maxSize", maxSize);
+        }
+    }
 }
@@ -1,70 +1,743 @@
 package org.folio.rest.utils;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Single;
+import io.reactivex.functions.Function;
+import io.vertx.core.Context;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.sql.ResultSet;
 import io.vertx.ext.sql.UpdateResult;
+import io.vertx.reactivex.ext.asyncsql.PostgreSQLClient;
 import io.vertx.reactivex.ext.sql.SQLConnection;
-import io.vertx.reactivex.ext.sql.SQLClient;
+import org.folio.rest.jaxrs.model.ResultInfo;
 import org.folio.rest.persist.Criteria.Criterion;
 import org.folio.rest.persist.cql.CQLWrapper;
 import org.folio.rest.persist.interfaces.Results;
+import org.folio.rest.routing.RequestMetrics;
+import org.folio.rest.tools.utils.ObjectMapperTool;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * Dummy PostgresClient
+ * Non blocking PostgresClient on top of the vert.x async postgres driver.
+ *
+ * One client is shared per tenant - {@link #getInstance(Vertx, String)} returns the same instance for
+ * every caller on every event loop until the client has been idle long enough to be closed by
+ * {@link #closeIdleClients(long)}. Each client owns a bounded {@link PgPool} of connections to the
+ * database, tables are qualified with the tenant's schema. The connection settings are the ones of the
+ * raml module builder's PostgresClient, so the db_connection / embed_postgres arguments apply here too.
+ *
+ * Results are always handed back on the vert.x context of the caller.
  */
 public class PostgresClient {
 
+  public static final int DEFAULT_POOL_SIZE = 5;
+  public static final int DEFAULT_MAX_WAIT_QUEUE_SIZE = 1000;
+
+  private static final Logger log = LoggerFactory.getLogger(PostgresClient.class);
+  private static final ObjectMapper MAPPER = ObjectMapperTool.getMapper();
+  private static final String ID_FIELD = "_id";
+  private static final String JSONB_FIELD = "jsonb";
+  private static final String COUNT_FIELD = "count";
+  private static final String VERSION_FIELD = "version";
+  private static final String DEFAULT_SCHEMA = "public";
+  private static final String CURSOR_NAME = "stream_cursor";
+
+  // tenant id -> client of that tenant, the empty key holds the client used without a tenant
+  private static final ConcurrentMap<String, PostgresClient> CLIENTS = new ConcurrentHashMap<>();
+
+  private static volatile int poolSize = DEFAULT_POOL_SIZE;
+  private static volatile int maxWaitQueueSize = DEFAULT_MAX_WAIT_QUEUE_SIZE;
+
   private final Vertx vertx;
   private final String tenantId;
-  private SQLClient client;
+  private final String schema;
+  private final PgPool pool;
+  private volatile long lastAccess = System.currentTimeMillis();
 
   private PostgresClient(Vertx vertx, String tenantId) {
     this.tenantId = tenantId;
     this.vertx = vertx;
-
+    this.schema = tenantId == null ? DEFAULT_SCHEMA : org.folio.rest.persist.PostgresClient.convertToPsqlStandard(tenantId);
+    JsonObject config = org.folio.rest.persist.PostgresClient.getInstance(vertx).getConnectionConfig().copy();
+    // the pool decides how many connections are open, the driver must never queue on its own
+    config.put("maxPoolSize", poolSize);
+    this.pool = new PgPool(PostgreSQLClient.createNonShared(io.vertx.reactivex.core.Vertx.newInstance(vertx), config),
+      poolSize, maxWaitQueueSize);
   }
+
   public static PostgresClient getInstance(Vertx vertx, String tenantId) {
-    return new PostgresClient(vertx, tenantId);
+    PostgresClient pgClient = CLIENTS.computeIfAbsent(key(tenantId), k -> new PostgresClient(vertx, tenantId));
+    pgClient.touch();
+    return pgClient;
+  }
+
+  private static String key(String tenantId) {
+    return tenantId == null ? "" : tenantId;
+  }
+
+  /**
+   * Size of the connection pools of clients created from now on.
+   * @param size  max open connections per tenant
+   * @param maxWaiting  max callers waiting for a connection per tenant, -1 for unbounded
+   */
+  public static void configurePool(int size, int maxWaiting) {
+    poolSize = size;
+    maxWaitQueueSize = maxWaiting;
+  }
+
+  /**
+   * Closes and forgets the clients which have not been used for the given time.
+   * @param idleMillis  time since the last use after which a client is closed
+   * @return number of clients closed
+   */
+  public static int closeIdleClients(long idleMillis) {
+    long idleSince = System.currentTimeMillis() - idleMillis;
+    int closed = 0;
+    Iterator<PostgresClient> iter = CLIENTS.values().iterator();
+    while (iter.hasNext()) {
+      PostgresClient pgClient = iter.next();
+      if (pgClient.lastAccess < idleSince && CLIENTS.remove(key(pgClient.tenantId), pgClient)) {
+        pgClient.close();
+        closed++;
+      }
+    }
+    return closed;
+  }
+
+  /**
+   * Closes and forgets the clients of all tenants.
+   */
+  public static void closeAllClients() {
+    Iterator<PostgresClient> iter = CLIENTS.values().iterator();
+    while (iter.hasNext()) {
+      PostgresClient pgClient = iter.next();
+      if (CLIENTS.remove(key(pgClient.tenantId), pgClient)) {
+        pgClient.close();
+      }
+    }
+  }
+
+  private void touch() {
+    lastAccess = System.currentTimeMillis();
+  }
+
+  public String getTenantId() {
+    return tenantId;
+  }
+
+  /**
+   * @return the schema of the tenant the tables are in
+   */
+  public String getSchema() {
+    return schema;
+  }
+
+  /**
+   * prometheus gauges of the connection pools of all tenants
+   */
+  public static void writePrometheus(StringBuilder sb) {
+    // metric, field of the pool stats, help
+    String[][] gauges = {
+      { "db_pool_active_connections", "active", "Connections of the pool in use" },
+      { "db_pool_idle_connections", "idle", "Open connections of the pool ready to be used" },
+      { "db_pool_size_connections", "size", "Open connections of the pool" },
+      { "db_pool_waiting", "waiting", "Callers queued for a connection of the pool" } };
+    for (String[] gauge : gauges) {
+      sb.append("# HELP ").append(gauge[0]).append(' ').append(gauge[2]).append('\n')
+        .append("# TYPE ").append(gauge[0]).append(" gauge\n");
+      for (PostgresClient pgClient : CLIENTS.values()) {
+        sb.append(gauge[0]).append("{tenant=\"");
+        RequestMetrics.escape(sb, String.valueOf(pgClient.tenantId));
+        sb.append("\"} ").append(pgClient.pool.getStats().getInteger(gauge[1])).append('\n');
+      }
+    }
+  }
+
+  /**
+   * @return active, idle and waiting counts of the connection pool of this tenant
+   */
+  public JsonObject getPoolStats() {
+    return pool.getStats();
+  }
+
+  /**
+   * Releases the resources held for the tenant.
+   */
+  public void close() {
+    pool.close();
   }
 
   public <T> Single<Results<T>> save(String tableName, String id, T entity) {
-    return Single.just(new Results<>());
+    touch();
+    return withConnection(conn -> save(conn, tableName, id, entity));
+  }
+
+  /**
+   * Inserts the entities with one multi row INSERT.
+   *
+   * @param ids  the ids of the entities, in the same order
+   * @return number of records inserted
+   */
+  public <T> Single<Integer> saveBatch(String tableName, List<String> ids, List<T> entities) {
+    touch();
+    if (entities.isEmpty()) {
+      return Single.just(0);
+    }
+    return withConnection(conn -> {
+      StringBuilder sql = new StringBuilder("INSERT INTO ").append(qualify(tableName))
+        .append(" (").append(ID_FIELD).append(", ").append(JSONB_FIELD).append(") VALUES ");
+      JsonArray params = new JsonArray();
+      for (int i = 0; i < entities.size(); i++) {
+        if (i > 0) {
+          sql.append(", ");
+        }
+        sql.append("(?::uuid, ?::JSONB)");
+        params.add(ids.get(i)).add(toJson(entities.get(i)));
+      }
+      return conn.rxUpdateWithParams(sql.toString(), params).map(UpdateResult::getUpdated);
+    });
+  }
+
+  public <T> Single<Results<T>> get(PgQuery query, Class<T> clazz, boolean returnCount, boolean setId) {
+    touch();
+    return withConnection(conn -> doGet(conn, query.getTable(), clazz, query.getFields(), query.getSql(), returnCount, setId));
+  }
+
+  /**
+   * Like {@link #get(PgQuery, Class, boolean, boolean)}, the version of the results is a digest of the ids and
+   * row versions of the records - it changes whenever a record of the page is written, enters or leaves it.
+   * The records are only mapped once the results are asked for.
+   */
+  public <T> Single<Versioned<Results<T>>> getVersioned(PgQuery query, Class<T> clazz) {
+    touch();
+    return withConnection(conn -> doGetVersioned(conn, query.getTable(), clazz, query.getSql(), true));
+  }
+
+  /**
+   * Like {@link #get(String, Class, Criterion, boolean, boolean)} for a criterion matching at most one record,
+   * the version of the results is the row version of the record - null if there is none. The record is only
+   * mapped once the results are asked for.
+   */
+  public <T> Single<Versioned<Results<T>>> getVersioned(String tableName, Class<T> clazz, Criterion criterion) {
+    touch();
+    return withConnection(conn -> doGetVersioned(conn, tableName, clazz, whereClause(criterion), false));
   }
 
   public <T> Single<Results<T>> get(String tableName, Class<T> clazz, String[] fields, CQLWrapper cql, boolean returnCount, boolean setId) {
-    return Single.just(new Results<>());
+    touch();
+    return withConnection(conn -> doGet(conn, tableName, clazz, fields, cql == null ? "" : cql.toString(), returnCount, setId));
+  }
+
+  /**
+   * One page of a keyset query, one record more than the limit is read to tell if there is a next page.
+   *
+   * @return the records of the page and the cursor of the next page if there is one
+   */
+  public <T> Single<KeysetPage<T>> get(String tableName, Class<T> clazz, KeysetQuery query) {
+    touch();
+    return withConnection(conn -> {
+      String sql = "SELECT " + ID_FIELD + ", " + JSONB_FIELD + " FROM " + qualify(tableName) + " " + query.getWhere()
+        + " " + query.getOrderBy() + " LIMIT " + (query.getLimit() + 1);
+      return conn.rxQueryWithParams(sql, query.getParams()).map(rs -> {
+        List<T> records = toResults(rs, clazz, false, false).getResults();
+        if (records.size() <= query.getLimit()) {
+          return new KeysetPage<>(records, null);
+        }
+        records = records.subList(0, query.getLimit());
+        return new KeysetPage<>(records, query.nextCursor(records.get(records.size() - 1)));
+      });
+    });
+  }
+
+  /**
+   * Counts the records matching the filter. Unless an exact count is asked for the planner's row estimate is
+   * taken if it is above estimateThreshold, an exact count(*) of that many rows would read them all - below
+   * the threshold the records are counted.
+   *
+   * @param filter  search condition, empty for all records
+   */
+  public Single<Count> count(String tableName, String filter, boolean exact, long estimateThreshold) {
+    touch();
+    String from = " FROM " + qualify(tableName) + (filter == null || filter.isEmpty() ? "" : " WHERE " + filter);
+    Single<Count> exactCount = withConnection(conn -> conn.rxQuery("SELECT count(*)" + from)
+      .map(rs -> new Count(rs.getResults().get(0).getLong(0), false)));
+    if (exact) {
+      return exactCount;
+    }
+    return withConnection(conn -> conn.rxQuery("EXPLAIN (FORMAT JSON) SELECT 1" + from).map(PostgresClient::planRows))
+      .flatMap(estimate -> estimate > estimateThreshold ? Single.just(new Count(estimate, true)) : exactCount);
+  }
+
+  private static long planRows(ResultSet rs) {
+    Object plan = rs.getResults().get(0).getValue(0);
+    JsonArray json = plan instanceof JsonArray ? (JsonArray) plan : new JsonArray(String.valueOf(plan));
+    return json.getJsonObject(0).getJsonObject("Plan").getLong("Plan Rows");
   }
 
   public <T> Single<UpdateResult> update(String tableName, T entity, Criterion criterion, boolean returnUpdatedIds) {
-    return Single.just(new UpdateResult());
+    touch();
+    return withConnection(conn -> {
+      String sql = "UPDATE " + qualify(tableName) + " SET " + JSONB_FIELD + " = ?::JSONB " + whereClause(criterion);
+      JsonArray params = new JsonArray().add(toJson(entity));
+      if (!returnUpdatedIds) {
+        return conn.rxUpdateWithParams(sql, params);
+      }
+      return conn.rxQueryWithParams(sql + " RETURNING " + ID_FIELD, params)
+        .map(rs -> {
+          JsonArray keys = new JsonArray();
+          rs.getRows().forEach(row -> keys.add(String.valueOf(row.getValue(ID_FIELD))));
+          return new UpdateResult(keys.size(), keys);
+        });
+    });
+  }
+
+  /**
+   * Updates the record matching the criterion only if its row version is one of the expected versions, in one
+   * statement - the check and the update can't be interleaved with another write.
+   *
+   * @param expectedVersions  versions the caller has seen, see {@link #getVersioned(String, Class, Criterion)}
+   * @return the new version if updated, true; the current version if not, false; null version if nothing matched
+   */
+  public <T> Single<Versioned<Boolean>> updateIfVersion(String tableName, T entity, Criterion criterion, String... expectedVersions) {
+    touch();
+    return withConnection(conn -> {
+      String table = qualify(tableName);
+      String sql = "WITH target AS (SELECT " + ID_FIELD + ", xmin::text AS " + VERSION_FIELD + " FROM " + table + " "
+        + whereClause(criterion) + "), updated AS (UPDATE " + table + " AS t SET " + JSONB_FIELD + " = ?::JSONB FROM target"
+        + " WHERE t." + ID_FIELD + " = target." + ID_FIELD + " AND target." + VERSION_FIELD + " = ANY(?::text[])"
+        + " RETURNING t.xmin::text AS " + VERSION_FIELD + ")"
+        + " SELECT (SELECT " + VERSION_FIELD + " FROM target LIMIT 1) AS current,"
+        + " (SELECT " + VERSION_FIELD + " FROM updated LIMIT 1) AS updated";
+      JsonArray params = new JsonArray().add(toJson(entity)).add(textArray(expectedVersions));
+      return conn.rxQueryWithParams(sql, params).map(rs -> {
+        JsonObject row = rs.getRows().get(0);
+        String updated = row.getString("updated");
+        boolean done = updated != null;
+        return new Versioned<>(done ? updated : row.getString("current"), () -> done);
+      });
+    });
+  }
+
+  /**
+   * versions are transaction ids, digits only, which need no quoting in an array literal
+   */
+  private static String textArray(String... values) {
+    StringBuilder sb = new StringBuilder("{");
+    for (String value : values) {
+      if (!value.matches("[0-9]+")) {
+        continue;
+      }
+      if (sb.length() > 1) {
+        sb.append(',');
+      }
+      sb.append(value);
+    }
+    return sb.append('}').toString();
   }
 
   public <T> Single<Results<T>> get(String tableName, Class<T> clazz, Criterion criterion, boolean returnCount, boolean setId) {
-    return Single.just(new Results<>());
+    touch();
+    return withConnection(conn -> doGet(conn, tableName, clazz, null, whereClause(criterion), returnCount, setId));
   }
 
   public <T> Single<Results<T>> get(SQLConnection connection, String tableName, Class<T> clazz, Criterion criterion, boolean returnCount, boolean setId) {
-    return Single.just(new Results<>());
+    touch();
+    return onCallerContext(doGet(connection, tableName, clazz, null, whereClause(criterion), returnCount, setId));
+  }
+
+  public Single<UpdateResult> delete(String tableName, Criterion criterion) {
+    touch();
+    return withConnection(conn -> conn.rxUpdate("DELETE FROM " + qualify(tableName) + " " + whereClause(criterion)));
   }
 
   public Single<UpdateResult> delete(SQLConnection sqlConnection, String tableName, Criterion criterion) {
-    return Single.just(new UpdateResult());
+    touch();
+    return onCallerContext(sqlConnection.rxUpdate("DELETE FROM " + qualify(tableName) + " " + whereClause(criterion)));
   }
 
   public <T> Single<Results<T>> save(SQLConnection connection, String tableName, T entity) {
-    return Single.just(new Results<>());
+    touch();
+    return onCallerContext(save(connection, tableName, null, entity));
+  }
+
+  /**
+   * Moves the records matching the criterion from one table to the other in a single atomic statement
+   * (one round trip) - the records are deleted from fromTable and inserted into toTable, which generates
+   * their new ids.
+   *
+   * @param fields  the jsonb properties copied to the new records, all but the id when none are passed
+   * @return the inserted records, empty if nothing matched
+   */
+  public <T> Single<Results<T>> move(String fromTable, String toTable, Criterion criterion, Class<T> clazz, String... fields) {
+    touch();
+    return withConnection(conn -> doMove(conn, fromTable, toTable, whereClause(criterion), new JsonArray(), clazz, fields));
   }
 
+  /**
+   * Moves the records with the given ids from one table to the other in a single atomic statement - the
+   * set based variant of {@link #move(String, String, Criterion, Class, String...)}. The new ids are
+   * generated here so each new record can be told apart by the id it was moved from.
+   *
+   * @param ids  ids of the records to move, ids which are no uuid can't match and are ignored - uuids are
+   *             case insensitive, ids differing in case only are moved once
+   * @return the new records by the lower case id they were moved from, ids which did not match are missing
+   */
+  public <T> Single<Map<String, T>> moveAll(String fromTable, String toTable, Collection<String> ids, Class<T> clazz,
+                                            String... fields) {
+    touch();
+    StringBuilder fromIds = new StringBuilder("{");
+    StringBuilder toIds = new StringBuilder("{");
+    Set<String> distinct = new LinkedHashSet<>();
+    for (String id : ids) {
+      if (isUuid(id)) {
+        // postgres returns the ids in lower case, the result is keyed by them
+        distinct.add(id.toLowerCase(Locale.ROOT));
+      }
+    }
+    for (String id : distinct) {
+      if (fromIds.length() > 1) {
+        fromIds.append(',');
+        toIds.append(',');
+      }
+      fromIds.append(id);
+      toIds.append(UUID.randomUUID());
+    }
+    if (fromIds.length() == 1) {
+      return Single.just(new LinkedHashMap<>());
+    }
+    String sql = "WITH ids AS (SELECT * FROM unnest(?::uuid[], ?::uuid[]) AS t(from_id, to_id)),"
+      + " moved AS (DELETE FROM " + qualify(fromTable) + " f USING ids WHERE f." + ID_FIELD + " = ids.from_id"
+      + " RETURNING ids.from_id, ids.to_id, f." + JSONB_FIELD + "),"
+      + " inserted AS (INSERT INTO " + qualify(toTable) + " (" + ID_FIELD + ", " + JSONB_FIELD + ")"
+      + " SELECT to_id, " + projection(fields) + " FROM moved RETURNING " + ID_FIELD + ", " + JSONB_FIELD + ")"
+      + " SELECT moved.from_id, inserted." + ID_FIELD + ", inserted." + JSONB_FIELD
+      + " FROM moved JOIN inserted ON inserted." + ID_FIELD + " = moved.to_id";
+    JsonArray params = new JsonArray().add(fromIds.append('}').toString()).add(toIds.append('}').toString());
+    return withConnection(conn -> conn.rxQueryWithParams(sql, params).map(rs -> {
+      List<T> moved = toResults(rs, clazz, false, true).getResults();
+      Map<String, T> byId = new LinkedHashMap<>();
+      for (int i = 0; i < moved.size(); i++) {
+        byId.put(String.valueOf(rs.getRows().get(i).getValue("from_id")), moved.get(i));
+      }
+      return byId;
+    }));
+  }
+
+  private static boolean isUuid(String id) {
+    try {
+      return id != null && UUID.fromString(id).toString().equalsIgnoreCase(id);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  private <T> Single<Results<T>> doMove(SQLConnection conn, String fromTable, String toTable, String where, JsonArray params,
+                                        Class<T> clazz, String... fields) {
+    String sql = "WITH moved AS (DELETE FROM " + qualify(fromTable) + " " + where + " RETURNING " + JSONB_FIELD + ")"
+      + " INSERT INTO " + qualify(toTable) + " (" + JSONB_FIELD + ") SELECT " + projection(fields) + " FROM moved"
+      + " RETURNING " + ID_FIELD + ", " + JSONB_FIELD;
+    return conn.rxQueryWithParams(sql, params).map(rs -> toResults(rs, clazz, false, true));
+  }
+
+  /**
+   * @return jsonb expression of a new record holding only the given properties of the moved one
+   */
+  private static String projection(String... fields) {
+    if (fields == null || fields.length == 0) {
+      return JSONB_FIELD + " - 'id'";
+    }
+    StringBuilder sb = new StringBuilder("jsonb_build_object(");
+    for (int i = 0; i < fields.length; i++) {
+      String field = fields[i].replace("'", "''");
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append('\'').append(field).append("', ").append(JSONB_FIELD).append("->'").append(field).append('\'');
+    }
+    return sb.append(')').toString();
+  }
+
+  /**
+   * Runs the work in one transaction on a pooled connection. The transaction is committed when the
+   * work succeeds and rolled back when it fails, the connection is given back to the pool in either case.
+   * If the subscriber disposes before the transaction has ended - the client went away, a timeout - a
+   * statement may still be running on the connection, so it is closed instead, which rolls back.
+   *
+   * <pre>
+   * pgClient.inTransaction(conn -&gt; pgClient.delete(conn, ...).flatMap(r -&gt; pgClient.save(conn, ...)))
+   * </pre>
+   *
+   * @param work  statements to run, all on the passed connection
+   * @return the outcome of the work, or its error once the transaction has been rolled back
+   */
+  public <T> Single<T> inTransaction(Function<SQLConnection, Single<T>> work) {
+    touch();
+    return onCallerContext(pool.getConnection().flatMap(conn -> {
+      // a connection whose commit or rollback failed is in an unknown state and is not reused
+      boolean[] broken = { false };
+      return conn.rxExecute("BEGIN")
+        .andThen(Single.defer(() -> work.apply(conn)))
+        .onErrorResumeNext(err -> rollback(conn, broken).andThen(Single.<T>error(err)))
+        .flatMap(result -> conn.rxExecute("COMMIT")
+          .doOnError(err -> broken[0] = true)
+          .toSingleDefault(result))
+        // disposed upstream first, so the flag is set before the release
+        .doOnDispose(() -> broken[0] = true)
+        .doFinally(() -> pool.release(conn, broken[0]));
+    }));
+  }
+
+  /**
+   * Streams the jsonb of the matching records as text, read page by page through a server side cursor so
+   * that neither the database driver nor the caller holds more than a page of fetchSize rows. The next page
+   * is only fetched once the subscriber has asked for more rows. The cursor lives in a transaction on a
+   * pooled connection which is held until the stream completes, fails or is cancelled.
+   *
+   * @param query  table, filter, order, limit and offset of the records
+   */
+  public Flowable<String> streamJsonb(PgQuery query, int fetchSize) {
+    touch();
+    String sql = "SELECT " + JSONB_FIELD + "::text AS " + JSONB_FIELD + " FROM " + qualify(query.getTable())
+      + " " + query.getSql();
+    String fetch = "FETCH FORWARD " + fetchSize + " FROM " + CURSOR_NAME;
+    return pool.getConnection().flatMapPublisher(conn -> {
+      boolean[] committed = { false };
+      return conn.rxExecute("BEGIN")
+        .andThen(conn.rxExecute("DECLARE " + CURSOR_NAME + " NO SCROLL CURSOR FOR " + sql))
+        .andThen(Flowable.defer(() -> conn.rxQuery(fetch).toFlowable())
+          .repeat()
+          .takeUntil(rs -> rs.getNumRows() < fetchSize))
+        // one page at a time
+        .concatMapIterable(ResultSet::getResults, 1)
+        .map(row -> row.getString(0))
+        .concatWith(conn.rxExecute("COMMIT").doOnComplete(() -> committed[0] = true).<String>toFlowable())
+        .doFinally(() -> {
+          if (committed[0]) {
+            pool.release(conn);
+          } else {
+            // failed or cancelled with the transaction still open
+            boolean[] broken = { false };
+            rollback(conn, broken).subscribe(() -> pool.release(conn, broken[0]));
+          }
+        });
+    });
+  }
+
+  private static Completable rollback(SQLConnection conn, boolean[] broken) {
+    return conn.rxExecute("ROLLBACK")
+      .doOnError(err -> {
+        log.error("rollback failed, closing the connection", err);
+        broken[0] = true;
+      })
+      .onErrorComplete();
+  }
+
+  /**
+   * Takes a connection from the pool and starts a transaction on it, the connection is given back
+   * by {@link #endTx(SQLConnection)} or {@link #rollbackTx(SQLConnection)}.
+   * Prefer {@link #inTransaction(Function)} which can not leak the connection.
+   */
   public Single<SQLConnection> startTx() {
-    return this.client.rxGetConnection();
+    touch();
+    return onCallerContext(pool.getConnection()
+      .flatMap(conn -> conn.rxExecute("BEGIN")
+        .toSingleDefault(conn)
+        .doOnError(err -> pool.release(conn, true))));
   }
 
+  /**
+   * Rolls back the transaction and gives the connection back to the pool.
+   */
   public void rollbackTx(SQLConnection connection) {
-    connection.close();
+    touch();
+    boolean[] broken = { false };
+    rollback(connection, broken)
+      .subscribe(() -> pool.release(connection, broken[0]));
   }
 
+  /**
+   * Commits the transaction and gives the connection back to the pool.
+   */
   public void endTx(SQLConnection connection) {
-    connection.close();
+    touch();
+    connection.rxExecute("COMMIT")
+      .subscribe(() -> pool.release(connection), err -> {
+        log.error("commit failed, closing the connection", err);
+        pool.release(connection, true);
+      });
+  }
+
+  /**
+   * Runs the work on a pooled connection which is given back once the work is done, whatever the outcome.
+   */
+  private <R> Single<R> withConnection(Function<SQLConnection, Single<R>> work) {
+    return onCallerContext(pool.getConnection()
+      .flatMap(conn -> {
+        Single<R> single;
+        try {
+          single = work.apply(conn);
+        } catch (Exception e) {
+          single = Single.error(e);
+        }
+        return single.doFinally(() -> pool.release(conn));
+      }));
+  }
+
+  private <T> Single<Results<T>> save(SQLConnection conn, String tableName, String id, T entity) {
+    try {
+      String sql;
+      JsonArray params = new JsonArray();
+      if (id == null) {
+        // the table generates the id
+        sql = "INSERT INTO " + qualify(tableName) + " (" + JSONB_FIELD + ") VALUES (?::JSONB) RETURNING "
+          + ID_FIELD + ", " + JSONB_FIELD;
+      } else {
+        sql = "INSERT INTO " + qualify(tableName) + " (" + ID_FIELD + ", " + JSONB_FIELD + ") VALUES (?::uuid, ?::JSONB) RETURNING "
+          + ID_FIELD + ", " + JSONB_FIELD;
+        params.add(id);
+      }
+      params.add(toJson(entity));
+      @SuppressWarnings("unchecked")
+      Class<T> clazz = (Class<T>) entity.getClass();
+      return conn.rxQueryWithParams(sql, params).map(rs -> toResults(rs, clazz, false, true));
+    } catch (Exception e) {
+      return Single.error(e);
+    }
+  }
+
+  private <T> Single<Results<T>> doGet(SQLConnection conn, String tableName, Class<T> clazz, String[] fields, String where,
+                                       boolean returnCount, boolean setId) {
+    StringBuilder sql = new StringBuilder("SELECT ");
+    if (fields == null || fields.length == 0 || (fields.length == 1 && "*".equals(fields[0]))) {
+      sql.append(ID_FIELD).append(", ").append(JSONB_FIELD);
+    } else {
+      sql.append(String.join(", ", fields));
+    }
+    if (returnCount) {
+      sql.append(", count(*) OVER() AS ").append(COUNT_FIELD);
+    }
+    sql.append(" FROM ").append(qualify(tableName)).append(' ').append(where);
+    return conn.rxQuery(sql.toString()).map(rs -> toResults(rs, clazz, returnCount, setId));
+  }
+
+  /**
+   * xmin, the id of the transaction which wrote the row, serves as row version - any write makes a new one
+   *
+   * @param digest  true to digest the ids and versions of all records, false for the version of the first one
+   */
+  private <T> Single<Versioned<Results<T>>> doGetVersioned(SQLConnection conn, String tableName, Class<T> clazz, String where,
+                                                           boolean digest) {
+    String sql = "SELECT " + ID_FIELD + ", " + JSONB_FIELD + ", xmin::text AS " + VERSION_FIELD + " FROM "
+      + qualify(tableName) + " " + where;
+    return conn.rxQuery(sql).map(rs -> {
+      String version;
+      if (digest) {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        for (JsonObject row : rs.getRows()) {
+          md.update(String.valueOf(row.getValue(ID_FIELD)).getBytes(StandardCharsets.UTF_8));
+          md.update((byte) ':');
+          md.update(row.getString(VERSION_FIELD).getBytes(StandardCharsets.UTF_8));
+          md.update((byte) ';');
+        }
+        version = Base64.getUrlEncoder().withoutPadding().encodeToString(md.digest());
+      } else {
+        version = rs.getNumRows() == 0 ? null : rs.getRows().get(0).getString(VERSION_FIELD);
+      }
+      return new Versioned<>(version, () -> toResults(rs, clazz, false, false));
+    });
+  }
+
+  private <T> Results<T> toResults(ResultSet rs, Class<T> clazz, boolean returnCount, boolean setId) throws Exception {
+    List<T> list = new ArrayList<>(rs.getNumRows());
+    int total = 0;
+    for (JsonObject row : rs.getRows()) {
+      Object value = row.getValue(JSONB_FIELD);
+      JsonObject json = value instanceof JsonObject ? (JsonObject) value : new JsonObject(String.valueOf(value));
+      Object id = row.getValue(ID_FIELD);
+      if (setId && id != null) {
+        json.put("id", id.toString());
+      }
+      list.add(MAPPER.readValue(json.encode(), clazz));
+      if (returnCount && row.getValue(COUNT_FIELD) instanceof Number) {
+        total = ((Number) row.getValue(COUNT_FIELD)).intValue();
+      }
+    }
+    Results<T> results = new Results<>();
+    results.setResults(list);
+    ResultInfo resultInfo = new ResultInfo();
+    resultInfo.setTotalRecords(returnCount ? total : list.size());
+    results.setResultInfo(resultInfo);
+    return results;
+  }
+
+  private String toJson(Object entity) throws Exception {
+    return MAPPER.writeValueAsString(entity);
   }
 
+  private String qualify(String tableName) {
+    return schema + "." + tableName;
+  }
+
+  private static String whereClause(Criterion criterion) {
+    return criterion == null ? "" : criterion.toString();
+  }
+
+  /**
+   * hands the outcome back on the context of the caller, the driver may complete on a different one
+   */
+  private static <T> Single<T> onCallerContext(Single<T> single) {
+    Context context = Vertx.currentContext();
+    if (context == null) {
+      return single;
+    }
+    return Single.create(emitter -> emitter.setDisposable(single.subscribe(
+      result -> context.runOnContext(v -> emitter.onSuccess(result)),
+      err -> context.runOnContext(v -> {
+        if (!emitter.isDisposed()) {
+          emitter.onError(err);
+        }
+      }))));
+  }
+
+  /**
+   * Number of records, either counted or estimated by the planner
+   */
+  public static final class Count {
+    private final long value;
+    private final boolean estimated;
+
+    public Count(long value, boolean estimated) {
+      this.value = value;
+      this.estimated = estimated;
+    }
+
+    public long getValue() {
+      return value;
+    }
+
+    public boolean isEstimated() {
+      return estimated;
+    }
+  }
 }
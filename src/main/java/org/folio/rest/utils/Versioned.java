@@ -0,0 +1,29 @@
+package org.folio.rest.utils;
+
+import java.util.concurrent.Callable;
+
+/**
+ * A value along with the version of the records it is made of. The value is only built when asked for,
+ * so a caller whose copy is still current can skip it.
+ */
+public final class Versioned<T> {
+
+  private final String version;
+  private final Callable<T> value;
+
+  public Versioned(String version, Callable<T> value) {
+    this.version = version;
+    this.value = value;
+  }
+
+  /**
+   * @return the version, null if there is no such record
+   */
+  public String getVersion() {
+    return version;
+  }
+
+  public T get() throws Exception {
+    return value.call();
+  }
+}
@@ -0,0 +1,76 @@
+package org.folio.rest.routing;
+
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpVersion;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class AccessLogTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @After
+  public void stop() {
+    AccessLog.stop();
+  }
+
+  @Test
+  public void shouldWriteRecordsInOrder() throws Exception {
+    File file = folder.newFile("access.log");
+    AccessLog.start(16, 4, 1d, file.getPath());
+    for (int i = 0; i < 10; i++) {
+      AccessLog.log(null, HttpMethod.GET, HttpVersion.HTTP_1_1, "/pets/" + i, i == 0 ? "pretty=true" : null,
+        200, 1500, 42, "diku", null);
+    }
+
+    List<String> lines = awaitLines(file, 10);
+    assertThat(lines.get(0), endsWith("- GET HTTP_1_1 /pets/0?pretty=true 200 1.500ms 42 tenant=diku"));
+    assertThat(lines.get(9), containsString(" /pets/9 200 "));
+    assertThat(AccessLog.getStats().getLong("written"), is(10L));
+  }
+
+  @Test
+  public void shouldAlwaysLogServerErrorsWhenSampling() throws Exception {
+    File file = folder.newFile("access.log");
+    AccessLog.start(16, 4, 0d, file.getPath());
+    AccessLog.log(null, HttpMethod.GET, HttpVersion.HTTP_1_1, "/pets", null, 200, 10, 0, null, null);
+    AccessLog.log(null, HttpMethod.PUT, HttpVersion.HTTP_1_1, "/pets/1", null, 500, -1, 0, null, "boom");
+
+    List<String> lines = awaitLines(file, 1);
+    assertThat(lines.size(), is(1));
+    assertThat(lines.get(0), endsWith("- PUT HTTP_1_1 /pets/1 500 -ms 0 tenant=- boom"));
+  }
+
+  private static List<String> awaitLines(File file, int count) throws InterruptedException {
+    for (int i = 0; i < 500; i++) {
+      List<String> lines = read(file);
+      if (lines.size() >= count) {
+        return lines;
+      }
+      Thread.sleep(10);
+    }
+    return read(file);
+  }
+
+  private static List<String> read(File file) {
+    try {
+      return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    } catch (Exception e) {
+      return Collections.emptyList();
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package org.folio.rest.routing;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import org.folio.rest.jaxrs.model.Pet;
+import org.junit.Test;
+
+import javax.validation.ConstraintViolation;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class BodyValidatorTest {
+
+  private final BodyValidator validator = BodyValidator.forClass(Pet.class);
+
+  @Test
+  public void shouldSkipReadOnlyPropertiesWhenReading() throws Exception {
+    Pet pet = validator.getReader().readValue("{\"genus\":\"felis\",\"quantity\":3,"
+      + "\"metadata\":{\"createdDate\":\"2018-01-01T00:00:00.000+0000\",\"createdByUserId\":\"x\"}}");
+
+    assertThat(pet.getMetadata(), is(nullValue()));
+    assertThat(validator.validate(pet).isEmpty(), is(true));
+    assertThat(validator.getReadOnly(), is(Collections.singletonList("metadata")));
+  }
+
+  @Test
+  public void shouldReportViolationsAndCountThem() throws Exception {
+    long failures = validator.getStats().getLong("failures");
+    Pet pet = validator.getReader().readValue("{\"quantity\":3}");
+
+    Set<ConstraintViolation<Object>> violations = validator.validate(pet);
+    assertThat(violations.size(), is(1));
+    assertThat(violations.iterator().next().getPropertyPath().toString(), is("genus"));
+    assertThat(validator.getStats().getLong("failures"), is(failures + 1));
+  }
+
+  @Test
+  public void shouldReadFromTheBytesOfTheBody() throws Exception {
+    String json = "{\"genus\":\"felis\",\"quantity\":3}";
+    // a slice starts at an offset of the backing array
+    Buffer slice = Buffer.buffer("[[" + json + "]]").slice(2, 2 + json.length());
+    Buffer direct = Buffer.buffer(Unpooled.directBuffer().writeBytes(json.getBytes(StandardCharsets.UTF_8)));
+
+    for (Buffer body : new Buffer[] { Buffer.buffer(json), slice, direct }) {
+      Pet pet = validator.read(body);
+      assertThat(pet.getGenus(), is("felis"));
+      assertThat(pet.getQuantity(), is(3));
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package org.folio.rest.routing;
+
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LoopMonitorTest {
+
+  @Test
+  public void shouldCountCallsHoldingTheLoopTooLongAsBlockedByRouteAndMethod() {
+    long threshold = TimeUnit.MILLISECONDS.toNanos(LoopMonitor.DEFAULT_BLOCKED_THRESHOLD);
+    LoopMonitor.record("/shouldCountBlocked/*", HttpMethod.GET, 1000, threshold);
+    LoopMonitor.record("/shouldCountBlocked/*", HttpMethod.GET, threshold + 1000, threshold);
+    LoopMonitor.record("/shouldCountBlocked/*", HttpMethod.PUT, 1000, threshold);
+
+    JsonObject route = LoopMonitor.getAllStats().getJsonObject("routes").getJsonObject("/shouldCountBlocked/*");
+    assertThat(route.getJsonObject("GET").getLong("calls"), is(2L));
+    assertThat(route.getJsonObject("GET").getLong("blocked"), is(1L));
+    assertThat(route.getJsonObject("GET").getLong("maxMicros"), is(TimeUnit.NANOSECONDS.toMicros(threshold + 1000)));
+    assertThat(route.getJsonObject("PUT").getLong("calls"), is(1L));
+    assertThat(route.getJsonObject("PUT").getLong("blocked"), is(0L));
+  }
+
+  @Test
+  public void shouldLabelPrometheusSamplesByRouteAndMethod() {
+    LoopMonitor.record("/shouldLabel", HttpMethod.POST, 1000, Long.MAX_VALUE);
+    StringBuilder sb = new StringBuilder();
+    LoopMonitor.writePrometheus(sb);
+
+    assertThat(sb.toString(), containsString(
+      "vertx_event_loop_function_calls_total{route=\"/shouldLabel\",method=\"POST\"} 1\n"));
+  }
+}
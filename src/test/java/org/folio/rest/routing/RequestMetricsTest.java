@@ -0,0 +1,56 @@
+package org.folio.rest.routing;
+
+import io.vertx.core.http.HttpMethod;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+public class RequestMetricsTest {
+
+  @Test
+  public void shouldPutLatencyIntoTheBucketBoundingIt() {
+    for (long micros = 0; micros < 100000; micros += micros < 1000 ? 1 : 37) {
+      int bucket = RequestMetrics.bucket(micros);
+      assertThat(micros, lessThanOrEqualTo(RequestMetrics.upperBound(bucket)));
+      if (bucket > 0) {
+        assertThat(micros > RequestMetrics.upperBound(bucket - 1), is(true));
+      }
+    }
+    assertThat(RequestMetrics.bucket(Long.MAX_VALUE), is(RequestMetrics.BUCKETS));
+  }
+
+  @Test
+  public void shouldWritePrometheusHistogram() {
+    RequestMetrics.record("shouldWrite", "/pets/*", HttpMethod.GET, 200, 1500, 0, 120);
+    RequestMetrics.record("shouldWrite", "/pets/*", HttpMethod.GET, 200, 2_000_000, 0, 80);
+    StringBuilder sb = new StringBuilder();
+    RequestMetrics.writePrometheus(sb);
+
+    String labels = "tenant=\"shouldWrite\",route=\"/pets/*\",method=\"GET\",status=\"200\"";
+    assertThat(sb.toString(), containsString("http_server_requests_seconds_bucket{" + labels + ",le=\"+Inf\"} 2\n"));
+    assertThat(sb.toString(), containsString("http_server_requests_seconds_sum{" + labels + "} 2.001500\n"));
+    assertThat(sb.toString(), containsString("http_server_response_bytes_total{" + labels + "} 200\n"));
+  }
+
+  @Test
+  public void shouldRecordTenantsBeyondTheCapAsOther() {
+    RequestMetrics.setMaxTenants(RequestMetrics.tenants() + 1);
+    try {
+      RequestMetrics.record("shouldCapFirst", "/pets", HttpMethod.GET, 200, 10, 0, 1);
+      RequestMetrics.record("shouldCapSecond", "/pets", HttpMethod.GET, 201, 10, 0, 1);
+    } finally {
+      RequestMetrics.setMaxTenants(RequestMetrics.DEFAULT_MAX_TENANTS);
+    }
+    StringBuilder sb = new StringBuilder();
+    RequestMetrics.writePrometheus(sb);
+
+    assertThat(sb.toString(), containsString("tenant=\"shouldCapFirst\",route=\"/pets\""));
+    assertThat(sb.toString(), not(containsString("shouldCapSecond")));
+    assertThat(sb.toString(), containsString(
+      "http_server_requests_seconds_count{tenant=\"other\",route=\"/pets\",method=\"GET\",status=\"201\"} "));
+  }
+}
@@ -0,0 +1,90 @@
+package org.folio.rest.routing;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ResponseCompressorTest {
+
+  private static String decompress(Buffer buffer, String encoding) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayInputStream bytes = new ByteArrayInputStream(buffer.getBytes());
+    try (InputStream in = ResponseCompressor.GZIP.equals(encoding)
+      ? new GZIPInputStream(bytes) : new InflaterInputStream(bytes)) {
+      byte[] chunk = new byte[1024];
+      for (int n = in.read(chunk); n != -1; n = in.read(chunk)) {
+        out.write(chunk, 0, n);
+      }
+    }
+    return out.toString("UTF-8");
+  }
+
+  @Test
+  public void shouldPreferGzipUnlessDeflateHasTheHigherQ() {
+    assertThat(ResponseCompressor.encoding("gzip"), is("gzip"));
+    assertThat(ResponseCompressor.encoding("gzip, deflate"), is("gzip"));
+    assertThat(ResponseCompressor.encoding("deflate, gzip;q=0.5"), is("deflate"));
+    assertThat(ResponseCompressor.encoding("deflate"), is("deflate"));
+    assertThat(ResponseCompressor.encoding("x-gzip"), is("gzip"));
+    assertThat(ResponseCompressor.encoding("*"), is("gzip"));
+    assertThat(ResponseCompressor.encoding("br, *;q=0.1"), is("gzip"));
+    assertThat(ResponseCompressor.encoding("gzip;q=0, *"), is("deflate"));
+  }
+
+  @Test
+  public void shouldNotCompressRefusedOrMissing() {
+    assertThat(ResponseCompressor.encoding(null), is(nullValue()));
+    assertThat(ResponseCompressor.encoding(""), is(nullValue()));
+    assertThat(ResponseCompressor.encoding("identity"), is(nullValue()));
+    assertThat(ResponseCompressor.encoding("gzip;q=0"), is(nullValue()));
+    assertThat(ResponseCompressor.encoding("gzip;q=0, deflate;q=0, *"), is(nullValue()));
+    assertThat(ResponseCompressor.encoding("*;q=0"), is(nullValue()));
+  }
+
+  @Test
+  public void shouldCompressOnlyFromThreshold() {
+    ResponseCompressor compressor = new ResponseCompressor(6, 10);
+    assertThat(compressor.shouldCompress(Buffer.buffer("123456789")), is(false));
+    assertThat(compressor.shouldCompress(Buffer.buffer("1234567890")), is(true));
+  }
+
+  @Test
+  public void shouldRoundTripBody() throws IOException {
+    String json = "{\"pets\":[{\"genus\":\"felis\"},{\"genus\":\"felis\"},{\"genus\":\"canis\"}],\"totalRecords\":3}";
+    ResponseCompressor compressor = new ResponseCompressor(6, 0);
+    for (String encoding : new String[] { ResponseCompressor.GZIP, ResponseCompressor.DEFLATE }) {
+      assertThat(decompress(compressor.compress(Buffer.buffer(json), encoding), encoding), is(json));
+    }
+  }
+
+  @Test
+  public void shouldRoundTripStreamFlushedBetweenItems() throws IOException {
+    for (String encoding : new String[] { ResponseCompressor.GZIP, ResponseCompressor.DEFLATE }) {
+      assertThat(roundTripStream(encoding), is(true));
+    }
+  }
+
+  private static boolean roundTripStream(String encoding) throws IOException {
+    ResponseCompressor.Stream stream = new ResponseCompressor(1, 0).stream(encoding);
+    Buffer wire = Buffer.buffer();
+    StringBuilder sent = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      String item = "{\"id\":" + i + ",\"genus\":\"felis\"}\n";
+      sent.append(item);
+      wire.appendBuffer(stream.write(Buffer.buffer(item)));
+      wire.appendBuffer(stream.flush());
+    }
+    wire.appendBuffer(stream.finish());
+    return decompress(wire, encoding).equals(sent.toString());
+  }
+}
@@ -0,0 +1,102 @@
+package org.folio.rest.routing;
+
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import org.folio.rest.MappedClasses;
+import org.folio.rest.tools.AnnotationGrabber;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class RouteTableTest {
+
+  private static RouteTable table;
+
+  @BeforeClass
+  public static void buildTable() {
+    MappedClasses mapped = new MappedClasses();
+    add(mapped, "^/pets$", "GET", "getPets");
+    add(mapped, "^/pets$", "POST", "postPets");
+    add(mapped, "^/pets/adopt$", "POST", "postPetsAdopt");
+    add(mapped, "^/pets/([^/]+)$", "GET", "getPetsById");
+    add(mapped, "^/pets/([^/]+)/owners/([^/]+)$", "GET", "getPetsOwnersById");
+    add(mapped, "^/files/.*$", "GET", "getFiles");
+    table = RouteTable.build(mapped);
+  }
+
+  private static void add(MappedClasses mapped, String urlRegex, String method, String function) {
+    // the interface does not exist, the invoker is only resolved when requested
+    mapped.addPath(urlRegex, new JsonObject()
+      .put(AnnotationGrabber.HTTP_METHOD, method)
+      .put(AnnotationGrabber.CLASS_NAME, "org.folio.rest.routing.NoSuchResource")
+      .put(AnnotationGrabber.FUNCTION_NAME, function));
+  }
+
+  private static String function(String path, HttpMethod method) {
+    RouteMatch match = table.lookup(path);
+    return match == null || match.getOperation(method) == null ? null : match.getOperation(method).getFunction();
+  }
+
+  @Test
+  public void shouldPreferLiteralOverPathParam() {
+    assertThat(function("/pets/adopt", HttpMethod.POST), is("postPetsAdopt"));
+    // the path resolves to the literal url, which has no GET
+    assertThat(function("/pets/adopt", HttpMethod.GET), is(nullValue()));
+    assertThat(table.lookup("/pets/adopt").getPathParams().length, is(0));
+  }
+
+  @Test
+  public void shouldResolveMethodsOfTheSameUrl() {
+    assertThat(function("/pets", HttpMethod.GET), is("getPets"));
+    assertThat(function("/pets", HttpMethod.POST), is("postPets"));
+    assertThat(function("/pets", HttpMethod.DELETE), is(nullValue()));
+  }
+
+  @Test
+  public void shouldExtractPathParamsInOrder() {
+    RouteMatch match = table.lookup("/pets/42/owners/7");
+    assertThat(match.getOperation(HttpMethod.GET).getFunction(), is("getPetsOwnersById"));
+    assertThat(Arrays.asList(match.getPathParams()), is(Arrays.asList("42", "7")));
+    assertThat(Arrays.asList(table.lookup("/pets/abc").getPathParams()), is(Collections.singletonList("abc")));
+  }
+
+  @Test
+  public void shouldRejectTrailingSlashAndEmptySegments() {
+    assertThat(table.lookup("/pets/"), is(nullValue()));
+    assertThat(table.lookup("/pets//owners/7"), is(nullValue()));
+    assertThat(table.lookup("/pets/42/owners"), is(nullValue()));
+    assertThat(table.lookup("/unknown"), is(nullValue()));
+    assertThat(table.lookup(""), is(nullValue()));
+  }
+
+  @Test
+  public void shouldFallBackToRegexRoutes() {
+    assertThat(function("/files/a/b.txt", HttpMethod.GET), is("getFiles"));
+    assertThat(table.lookup("/files/a/b.txt").getPathParams().length, is(0));
+  }
+
+  @Test
+  public void shouldSplitLiteralPath() {
+    assertThat(RouteTable.toSegments("^/pets$"), is(Collections.singletonList("pets")));
+    assertThat(RouteTable.toSegments("^/_/tenant$"), is(Arrays.asList("_", "tenant")));
+  }
+
+  @Test
+  public void shouldTurnPathParamsIntoWildcards() {
+    assertThat(RouteTable.toSegments("^/pets/([^/]+)$"), is(Arrays.asList("pets", null)));
+    assertThat(RouteTable.toSegments("^/pets/adopt/([^\\/]+)$"), is(Arrays.asList("pets", "adopt", null)));
+  }
+
+  @Test
+  public void shouldFallBackToRegexWhenNotRepresentable() {
+    assertThat(RouteTable.toSegments("/pets"), is(nullValue()));
+    assertThat(RouteTable.toSegments("^/pets/.*$"), is(nullValue()));
+    assertThat(RouteTable.toSegments("^/pets//x$"), is(nullValue()));
+  }
+}
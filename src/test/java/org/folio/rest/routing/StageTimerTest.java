@@ -0,0 +1,37 @@
+package org.folio.rest.routing;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.folio.rest.routing.StageTimer.Stage;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class StageTimerTest {
+
+  @Test
+  public void shouldReportTheStagesReachedInOrder() {
+    StageTimer timer = new StageTimer(System.nanoTime());
+    timer.mark(Stage.ROUTE);
+    timer.mark(Stage.HANDLER);
+    timer.mark(Stage.SERIALIZE);
+
+    String header = timer.toServerTiming();
+    assertTrue(header, header.matches(
+      "route;dur=\\d+\\.\\d{3}, handler;dur=\\d+\\.\\d{3}, serialize;dur=\\d+\\.\\d{3}, total;dur=\\d+\\.\\d{3}"));
+
+    JsonObject spans = timer.toSpans("req-1", "/pets/*");
+    assertThat(spans.getString("requestId"), is("req-1"));
+    JsonArray stages = spans.getJsonArray("spans");
+    assertThat(stages.size(), is(3));
+    assertThat(stages.getJsonObject(1).getString("name"), is("handler"));
+  }
+
+  @Test
+  public void shouldSampleAllOrNone() {
+    assertThat(StageTimer.sample(1), is(true));
+    assertThat(StageTimer.sample(0), is(false));
+  }
+}
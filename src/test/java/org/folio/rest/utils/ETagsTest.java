@@ -0,0 +1,28 @@
+package org.folio.rest.utils;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ETagsTest {
+
+  @Test
+  public void shouldMatchListedOrAnyTag() {
+    String etag = ETags.of("1234");
+
+    assertThat(etag, is("\"1234\""));
+    assertThat(ETags.matches("\"1234\"", etag), is(true));
+    assertThat(ETags.matches("\"1\", W/\"1234\"", etag), is(true));
+    assertThat(ETags.matches("*", etag), is(true));
+    assertThat(ETags.matches("\"123\"", etag), is(false));
+    assertThat(ETags.matches("1234", etag), is(false));
+    assertThat(ETags.matches(null, etag), is(false));
+  }
+
+  @Test
+  public void shouldUnquoteVersions() {
+    assertThat(ETags.versions("\"1234\", \"5678\""), arrayContaining("1234", "5678"));
+  }
+}
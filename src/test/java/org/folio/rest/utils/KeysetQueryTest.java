@@ -0,0 +1,68 @@
+package org.folio.rest.utils;
+
+import org.folio.rest.jaxrs.model.Pet;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class KeysetQueryTest {
+
+  private static final String TABLE = "homeless_pets";
+  private static final String ID = "c6f8bb7b-5ee6-4b3e-8d52-53f8d4a3b1a0";
+  private static final Set<String> SORT_FIELDS = Collections.singleton("genus");
+
+  @Test
+  public void shouldOrderByIdOnFirstPage() throws Exception {
+    KeysetQuery query = new KeysetQuery(TABLE, null, KeysetQuery.FIRST_PAGE, 10, SORT_FIELDS);
+    assertThat(query.getWhere(), is(""));
+    assertThat(query.getOrderBy(), is("ORDER BY _id"));
+    assertThat(query.getParams().size(), is(0));
+  }
+
+  @Test
+  public void shouldSeekPastLastIdOfPreviousPage() throws Exception {
+    KeysetQuery first = new KeysetQuery(TABLE, null, KeysetQuery.FIRST_PAGE, 10, SORT_FIELDS);
+    KeysetQuery next = new KeysetQuery(TABLE, null, first.nextCursor(pet(ID, "Felis")), 10, SORT_FIELDS);
+    assertThat(next.getWhere(), is("WHERE _id > ?::uuid"));
+    assertThat(next.getParams().getString(0), is(ID));
+  }
+
+  @Test
+  public void shouldSeekPastLastSortKeyOfPreviousPage() throws Exception {
+    String cql = "cql.allRecords=1 sortBy genus/sort.descending";
+    KeysetQuery first = new KeysetQuery(TABLE, cql, KeysetQuery.FIRST_PAGE, 10, SORT_FIELDS);
+    assertThat(first.getOrderBy(), is("ORDER BY COALESCE(homeless_pets.jsonb->'genus', 'null'::jsonb) DESC, _id DESC"));
+
+    KeysetQuery next = new KeysetQuery(TABLE, cql, first.nextCursor(pet(ID, "Felis")), 10, SORT_FIELDS);
+    assertThat(next.getParams().getString(0), is("\"Felis\""));
+    assertThat(next.getParams().getString(1), is(ID));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectCursorOfOtherQuery() throws Exception {
+    KeysetQuery first = new KeysetQuery(TABLE, "genus=Felis", KeysetQuery.FIRST_PAGE, 10, SORT_FIELDS);
+    new KeysetQuery(TABLE, "genus=Canis", first.nextCursor(pet(ID, "Felis")), 10, SORT_FIELDS);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectSortFieldWithoutIndex() throws Exception {
+    new KeysetQuery(TABLE, "cql.allRecords=1 sortBy notes", KeysetQuery.FIRST_PAGE, 10, SORT_FIELDS);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectMalformedCursor() throws Exception {
+    new KeysetQuery(TABLE, null, "not a cursor", 10, SORT_FIELDS);
+  }
+
+  private static Pet pet(String id, String genus) {
+    Pet pet = new Pet();
+    pet.setId(id);
+    pet.setGenus(genus);
+    pet.setQuantity(1);
+    return pet;
+  }
+}
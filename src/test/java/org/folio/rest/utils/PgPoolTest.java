@@ -0,0 +1,177 @@
+package org.folio.rest.utils;
+
+import io.reactivex.observers.TestObserver;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.ext.asyncsql.AsyncSQLClient;
+import io.vertx.reactivex.ext.sql.SQLConnection;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * The pool against a stubbed client which opens connections right away - no database needed. Without a
+ * vert.x context connections are handed over on the calling thread.
+ */
+public class PgPoolTest {
+
+  private int opened;
+  private int closed;
+  private boolean failToOpen;
+
+  private PgPool pool(int maxSize, int maxWaiting) {
+    AsyncSQLClient client = stub(AsyncSQLClient.class, (proxy, method, args) -> {
+      if ("getConnection".equals(method.getName())) {
+        @SuppressWarnings("unchecked")
+        Handler<AsyncResult<io.vertx.ext.sql.SQLConnection>> handler =
+          (Handler<AsyncResult<io.vertx.ext.sql.SQLConnection>>) args[0];
+        if (failToOpen) {
+          handler.handle(Future.failedFuture("connection refused"));
+        } else {
+          opened++;
+          handler.handle(Future.succeededFuture(connection()));
+        }
+      }
+      return null;
+    });
+    return new PgPool(io.vertx.reactivex.ext.asyncsql.AsyncSQLClient.newInstance(client), maxSize, maxWaiting);
+  }
+
+  private io.vertx.ext.sql.SQLConnection connection() {
+    return stub(io.vertx.ext.sql.SQLConnection.class, (proxy, method, args) -> {
+      if ("close".equals(method.getName())) {
+        closed++;
+      }
+      return null;
+    });
+  }
+
+  /**
+   * @return proxy of the interface, methods returning the interface itself return the proxy
+   */
+  private static <T> T stub(Class<T> type, InvocationHandler handler) {
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+      if (method.getDeclaringClass() == Object.class) {
+        return objectMethod(proxy, method, args);
+      }
+      Object result = handler.invoke(proxy, method, args);
+      return result == null && method.getReturnType().isInstance(proxy) ? proxy : result;
+    }));
+  }
+
+  private static Object objectMethod(Object proxy, Method method, Object[] args) {
+    switch (method.getName()) {
+      case "equals":
+        return proxy == args[0];
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      default:
+        return "stub";
+    }
+  }
+
+  private static SQLConnection connectionOf(TestObserver<SQLConnection> observer) {
+    observer.assertValueCount(1);
+    return observer.values().get(0);
+  }
+
+  @Before
+  public void setUp() {
+    opened = 0;
+    closed = 0;
+    failToOpen = false;
+  }
+
+  @Test
+  public void shouldQueueBeyondMaxSizeAndRejectOnceTheQueueIsFull() {
+    PgPool pool = pool(2, 1);
+    SQLConnection first = connectionOf(pool.getConnection().test());
+    connectionOf(pool.getConnection().test());
+    TestObserver<SQLConnection> waiting = pool.getConnection().test();
+    waiting.assertNoValues();
+    assertThat(pool.getStats().getInteger("active"), is(2));
+    assertThat(pool.getStats().getInteger("waiting"), is(1));
+
+    pool.getConnection().test().assertError(PgPool.PoolExhaustedException.class);
+
+    pool.release(first);
+    assertThat(connectionOf(waiting), is(sameInstance(first)));
+    assertThat(pool.getStats().getInteger("waiting"), is(0));
+    assertThat(opened, is(2));
+  }
+
+  @Test
+  public void shouldReuseReleasedConnection() {
+    PgPool pool = pool(2, 1);
+    SQLConnection first = connectionOf(pool.getConnection().test());
+    pool.release(first);
+    assertThat(pool.getStats().getInteger("idle"), is(1));
+
+    assertThat(connectionOf(pool.getConnection().test()), is(sameInstance(first)));
+    assertThat(opened, is(1));
+    assertThat(closed, is(0));
+  }
+
+  @Test
+  public void shouldCloseBrokenConnectionAndOpenAnotherForTheWaiter() {
+    PgPool pool = pool(1, 1);
+    SQLConnection first = connectionOf(pool.getConnection().test());
+    TestObserver<SQLConnection> waiting = pool.getConnection().test();
+
+    pool.release(first, true);
+    assertThat(closed, is(1));
+    assertThat(connectionOf(waiting), is(not(sameInstance(first))));
+    assertThat(opened, is(2));
+    assertThat(pool.getStats().getInteger("size"), is(1));
+  }
+
+  @Test
+  public void shouldSkipDisposedWaiter() {
+    PgPool pool = pool(1, 1);
+    SQLConnection first = connectionOf(pool.getConnection().test());
+    TestObserver<SQLConnection> waiting = pool.getConnection().test();
+    waiting.dispose();
+    assertThat(pool.getStats().getInteger("waiting"), is(0));
+
+    pool.release(first);
+    waiting.assertNoValues();
+    assertThat(pool.getStats().getInteger("active"), is(0));
+    assertThat(pool.getStats().getInteger("idle"), is(1));
+  }
+
+  @Test
+  public void shouldFreeTheSlotOfAConnectionWhichFailedToOpen() {
+    PgPool pool = pool(1, 1);
+    failToOpen = true;
+    pool.getConnection().test().assertErrorMessage("connection refused");
+    assertThat(pool.getStats().getInteger("size"), is(0));
+    assertThat(pool.getStats().getInteger("active"), is(0));
+
+    failToOpen = false;
+    connectionOf(pool.getConnection().test());
+    assertThat(opened, is(1));
+  }
+
+  @Test
+  public void shouldFailWaitersOnCloseAndCloseConnectionsInUseOnceReleased() {
+    PgPool pool = pool(1, 1);
+    SQLConnection first = connectionOf(pool.getConnection().test());
+    TestObserver<SQLConnection> waiting = pool.getConnection().test();
+
+    pool.close();
+    waiting.assertError(IllegalStateException.class);
+    pool.getConnection().test().assertError(IllegalStateException.class);
+    // in use while the pool closed, closed once released
+    pool.release(first);
+    assertThat(closed, is(1));
+  }
+}
@@ -0,0 +1,34 @@
+package org.folio.rest.utils;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+public class PgQueryTest {
+
+  private static final String[] ALL_FIELDS = {"*"};
+  private static final String TABLE = "homeless_pets";
+
+  @Test
+  public void shouldApplyLimitAndOffsetToCachedTranslation() throws Exception {
+    String query = "genus=felis sortBy quantity";
+    PgQuery first = new PgQuery.PgQueryBuilder(ALL_FIELDS, TABLE).query(query).limit(10).offset(0).build();
+    long hits = PgQuery.getCacheStats().getLong("hits");
+    PgQuery second = new PgQuery.PgQueryBuilder(ALL_FIELDS, TABLE).query(query).limit(5).offset(20).build();
+
+    assertThat(PgQuery.getCacheStats().getLong("hits"), is(hits + 1));
+    assertThat(first.getSql(), startsWith("WHERE "));
+    assertThat(second.getSql().endsWith(" LIMIT 5 OFFSET 20"), is(true));
+    assertThat(first.getSql().replace(" LIMIT 10 OFFSET 0", ""), is(second.getSql().replace(" LIMIT 5 OFFSET 20", "")));
+    assertThat(first.getFilter().contains("ORDER BY"), is(false));
+  }
+
+  @Test
+  public void shouldHaveNoConditionWithoutQuery() throws Exception {
+    PgQuery query = new PgQuery.PgQueryBuilder(ALL_FIELDS, TABLE).limit(10).build();
+    assertThat(query.getSql(), is(" LIMIT 10 OFFSET 0"));
+    assertThat(query.getFilter(), is(""));
+  }
+}
@@ -0,0 +1,151 @@
+package org.folio.rest.utils;
+
+import io.reactivex.Single;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.reactivex.ext.sql.SQLConnection;
+import org.folio.rest.client.TenantClient;
+import org.folio.rest.impl.RestVerticle2;
+import org.folio.rest.jaxrs.model.Pet;
+import org.folio.rest.persist.Criteria.Criteria;
+import org.folio.rest.persist.Criteria.Criterion;
+import org.folio.rest.tools.utils.NetworkUtils;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Against embedded postgres, skipped where it can't be started - the pool itself is covered by {@link PgPoolTest}.
+ */
+@RunWith(VertxUnitRunner.class)
+public class PostgresClientTest {
+
+  private static final String TENANT = "diku";
+  private static final String TABLE_NAME = "homeless_pets";
+  private static final int POOL_SIZE = 2;
+  private static final int MAX_WAITING = 1;
+
+  private static Vertx vertx;
+  private static boolean postgresStarted;
+
+  @org.junit.Rule
+  public Timeout timeout = Timeout.seconds(180);
+
+  @BeforeClass
+  public static void setUpClass(final TestContext context) throws Exception {
+    Async async = context.async();
+    vertx = Vertx.vertx();
+    int port = NetworkUtils.nextFreePort();
+    org.folio.rest.persist.PostgresClient.setIsEmbedded(true);
+    try {
+      org.folio.rest.persist.PostgresClient.getInstance(vertx).startEmbeddedPostgres();
+    } catch (Exception e) {
+      // vertx is closed by tearDownClass
+      Assume.assumeNoException("embedded postgres is not available", e);
+    }
+    postgresStarted = true;
+    TenantClient tenantClient = new TenantClient("localhost", port, TENANT, "diku");
+    final DeploymentOptions options = new DeploymentOptions().setConfig(new JsonObject()
+      .put("http.port", port)
+      .put("db.pool.size", POOL_SIZE)
+      .put("db.pool.max.waiting", MAX_WAITING));
+    vertx.deployVerticle(RestVerticle2.class.getName(), options, res -> {
+      try {
+        tenantClient.postTenant(null, res2 -> async.complete());
+      } catch (Exception e) {
+        context.fail(e);
+      }
+    });
+  }
+
+  @AfterClass
+  public static void tearDownClass(final TestContext context) {
+    Async async = context.async();
+    PostgresClient.closeAllClients();
+    vertx.close(context.asyncAssertSuccess(res -> {
+      if (postgresStarted) {
+        org.folio.rest.persist.PostgresClient.stopEmbeddedPostgres();
+      }
+      async.complete();
+    }));
+  }
+
+  @Test
+  public void shouldSaveAndGetById(final TestContext context) {
+    PostgresClient pgClient = PostgresClient.getInstance(vertx, TENANT);
+    Async async = context.async();
+    Pet pet = new Pet();
+    pet.setId(UUID.randomUUID().toString());
+    pet.setGenus("Felis");
+    pet.setQuantity(3);
+
+    pgClient.save(TABLE_NAME, pet.getId(), pet)
+      .flatMap(saved -> pgClient.get(TABLE_NAME, Pet.class, new Criterion(idCriteria(pet.getId())), true, false))
+      .subscribe(results -> {
+        context.assertEquals(1, results.getResults().size());
+        context.assertEquals("Felis", results.getResults().get(0).getGenus());
+        context.assertEquals(0, pgClient.getPoolStats().getInteger("active"));
+        async.complete();
+      }, context::fail);
+  }
+
+  @Test
+  public void shouldMoveMixedCaseIdsOnceKeyedByLowerCase(final TestContext context) {
+    PostgresClient pgClient = PostgresClient.getInstance(vertx, TENANT);
+    Async async = context.async();
+    Pet pet = new Pet();
+    pet.setId(UUID.randomUUID().toString());
+    pet.setGenus("Felis");
+    pet.setQuantity(1);
+    String upper = pet.getId().toUpperCase(Locale.ROOT);
+
+    pgClient.save(TABLE_NAME, pet.getId(), pet)
+      .flatMap(saved -> pgClient.moveAll(TABLE_NAME, "adopted_pets", Arrays.asList(upper, pet.getId()), Pet.class))
+      .subscribe(moved -> {
+        context.assertEquals(1, moved.size());
+        context.assertEquals("Felis", moved.get(pet.getId()).getGenus());
+        async.complete();
+      }, context::fail);
+  }
+
+  @Test
+  public void shouldQueueAndThenRejectWhenPoolIsExhausted(final TestContext context) {
+    PostgresClient pgClient = PostgresClient.getInstance(vertx, TENANT);
+    Async async = context.async();
+
+    Single.zip(pgClient.startTx(), pgClient.startTx(), (c1, c2) -> new SQLConnection[]{c1, c2})
+      .subscribe(conns -> {
+        context.assertEquals(POOL_SIZE, pgClient.getPoolStats().getInteger("active"));
+        // waits for a connection - the queue is full afterwards
+        pgClient.startTx().subscribe(c3 -> {
+          pgClient.endTx(c3);
+          async.complete();
+        }, context::fail);
+        context.assertEquals(MAX_WAITING, pgClient.getPoolStats().getInteger("waiting"));
+        pgClient.startTx().subscribe(c4 -> context.fail("pool should be exhausted"), err -> {
+          context.assertTrue(err instanceof PgPool.PoolExhaustedException);
+          pgClient.rollbackTx(conns[0]);
+          pgClient.endTx(conns[1]);
+        });
+      }, context::fail);
+  }
+
+  private static Criteria idCriteria(String id) {
+    Criteria criteria = new Criteria();
+    criteria.addField("'id'");
+    criteria.setOperation("=");
+    criteria.setValue(id);
+    return criteria;
+  }
+}